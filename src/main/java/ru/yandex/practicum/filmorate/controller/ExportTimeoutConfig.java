@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+// Таймаут асинхронной обработки только для потоковых выгрузок (/films/export, /users/export): выгрузка всей
+// таблицы может идти дольше стандартного таймаута, остальные асинхронные запросы его сохраняют.
+// Контроллер помечает запрос выгрузки, а перехватчик меняет таймаут до начала асинхронной обработки;
+// по той же пометке ServerTimingFilter не добавляет выгрузкам заголовок Server-Timing.
+@Configuration
+public class ExportTimeoutConfig implements WebMvcConfigurer {
+    private static final String EXPORT_ATTRIBUTE = ExportTimeoutConfig.class.getName() + ".EXPORT";
+
+    private final long exportTimeoutMs;
+
+    public ExportTimeoutConfig(@Value("${filmorate.export.timeout-ms:-1}") long exportTimeoutMs) {
+        this.exportTimeoutMs = exportTimeoutMs;
+    }
+
+    public static void markExport(HttpServletRequest request) {
+        request.setAttribute(EXPORT_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    public static boolean isExport(HttpServletRequest request) {
+        return request.getAttribute(EXPORT_ATTRIBUTE) != null;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(EXPORT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+                    asyncRequest.setTimeout(exportTimeoutMs);
+                }
+            }
+        });
+    }
+}
@@ -1,15 +1,27 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchImportResult;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.validation.OnCreate;
 import ru.yandex.practicum.filmorate.validation.OnUpdate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
@@ -19,6 +31,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     // Получение всех фильмов
     @GetMapping
@@ -27,6 +40,49 @@ public class FilmController {
         return filmService.getAllFilms();
     }
 
+    // Постраничное получение фильмов: limit - размер страницы, after - курсор из предыдущего ответа
+    @GetMapping(params = {"limit", "!ids"})
+    public CursorPage<Film> getFilmsPage(@RequestParam int limit, @RequestParam(required = false) Long after) {
+        log.info("Запрошена страница фильмов: after={}, limit={}", after, limit);
+        return filmService.getFilmsPage(after, limit);
+    }
+
+    // Получение нескольких фильмов по списку ID (ids=1,2,3) с сохранением порядка
+    @GetMapping(params = {"ids", "!limit"})
+    public MultiGetResult<Film> getFilmsByIds(@RequestParam List<Long> ids) {
+        log.info("Запрошены фильмы с ID: {}", ids);
+        return filmService.getFilmsByIds(ids);
+    }
+
+    // Страница и выборка по списку ID - разные режимы, их параметры вместе не принимаются
+    @GetMapping(params = {"limit", "ids"})
+    public void rejectPageWithIds() {
+        throw new ValidationException("Параметры limit и ids нельзя указывать вместе.");
+    }
+
+    // Потоковая выгрузка всех фильмов в формате NDJSON
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFilms(HttpServletRequest request) {
+        log.info("Запрошена выгрузка всех фильмов");
+        ExportTimeoutConfig.markExport(request);
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                filmService.exportFilms(writer::write);
+            }
+        };
+        return ResponseEntity.ok().contentType(NdjsonWriter.APPLICATION_NDJSON).body(body);
+    }
+
+    // Массовый импорт фильмов: JSON-массив или NDJSON (по одному фильму на строку).
+    // Тело запроса читается потоком, ответ содержит число загруженных фильмов и ошибки отдельных элементов.
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NdjsonWriter.APPLICATION_NDJSON_VALUE})
+    public BatchImportResult importFilms(InputStream body) throws IOException {
+        log.info("Запрошен массовый импорт фильмов");
+        try (MappingIterator<Film> films = objectMapper.readerFor(Film.class).readValues(body)) {
+            return filmService.importFilms(films);
+        }
+    }
+
     // Получение фильма по ID
     @GetMapping("/{id}")
     public Film getFilmById(@PathVariable Long id) {
@@ -62,10 +118,25 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    // Фильмы, похожие на данный по жанрам и аудитории
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilarFilms(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        log.info("Запрошено {} фильмов, похожих на фильм с ID {}", count, id);
+        return filmService.getSimilarFilms(id, count);
+    }
+
     // Получение списка популярных фильмов
     @GetMapping("/popular")
     public List<Film> getMostPopularFilms(@RequestParam(defaultValue = "10") int count) {
         log.info("Запрошено {} самых популярных фильмов", count);
         return filmService.getMostPopularFilms(count);
     }
+
+    // Получение фильмов с наибольшим числом лайков за последнее время
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "24h") String window,
+                                       @RequestParam(defaultValue = "10") int count) {
+        log.info("Запрошено {} фильмов в трендах за {}", count, window);
+        return filmService.getTrendingFilms(window, count);
+    }
 }
\ No newline at end of file
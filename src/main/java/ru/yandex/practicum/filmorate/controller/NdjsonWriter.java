@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Запись объектов в формате NDJSON: один JSON-объект на строку, сразу в поток ответа
+public class NdjsonWriter implements AutoCloseable {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    // Тип ответа выгрузки: строки пишутся в UTF-8, и кодировка указывается явно - без неё клиенты
+    // читают тело как ISO-8859-1
+    public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Первая строка отправляется сразу, дальше буфер сбрасывается каждые FLUSH_EVERY строк,
+    // чтобы клиент получал данные, не дожидаясь заполнения буфера
+    private static final int FLUSH_EVERY = 100;
+
+    private final ObjectMapper objectMapper;
+    private final OutputStream out;
+    private long rows;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream out) {
+        this.objectMapper = objectMapper;
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    public void write(Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            if (++rows % FLUSH_EVERY == 1) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать строку выгрузки", e);
+        }
+    }
+
+    // Поток ответа закрывает контейнер сервлетов, здесь только сбрасывается буфер
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+}
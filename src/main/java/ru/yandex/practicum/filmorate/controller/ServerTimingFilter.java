@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.dao.datasource.StatementStats;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+
+// Учёт обращений к базе данных в каждом HTTP-запросе. Число операторов и их время передаются клиенту
+// в заголовке Server-Timing (db;dur=<мс>;desc="<N> statements", app;dur=<мс>), который добавляется перед
+// отправкой тела ответа. Запросы сверх бюджета (filmorate.db.budget.*) и многократно повторённый SQL
+// (вероятный N+1) записываются в лог. Включается настройкой filmorate.db.statement-stats.enabled=true.
+// Выгрузкам (запросы, помеченные ExportTimeoutConfig.markExport) и другим асинхронным ответам заголовок
+// не добавляется: их тело пишется в другом потоке, когда учёт в потоке запроса уже закончен. Признака
+// isAsyncStarted недостаточно: поток ответа выгрузки открывается ещё в потоке запроса, до начала асинхронной
+// обработки. Повторный вход в фильтр при асинхронной диспетчеризации пропускается.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.db.statement-stats.enabled", havingValue = "true")
+public class ServerTimingFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Server-Timing";
+
+    private final int maxStatements;
+    private final long maxTimeMs;
+    private final int repeatedThreshold;
+
+    public ServerTimingFilter(@Value("${filmorate.db.budget.statements:30}") int maxStatements,
+                              @Value("${filmorate.db.budget.time-ms:500}") long maxTimeMs,
+                              @Value("${filmorate.db.budget.repeated-statements:5}") int repeatedThreshold) {
+        this.maxStatements = maxStatements;
+        this.maxTimeMs = maxTimeMs;
+        this.repeatedThreshold = repeatedThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long started = System.nanoTime();
+        StatementStats stats = StatementStats.start();
+        TimingResponse timingResponse = new TimingResponse(request, response, stats, started);
+        try {
+            chain.doFilter(request, timingResponse);
+            timingResponse.addTiming();
+        } finally {
+            StatementStats.stop();
+            checkBudget(request, stats);
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, StatementStats stats) {
+        if (stats.getStatements() > maxStatements || stats.getMillis() > maxTimeMs) {
+            log.warn("{} {}: {} операторов SQL за {} мс, бюджет - {} операторов и {} мс", request.getMethod(),
+                    request.getRequestURI(), stats.getStatements(), format(stats.getMillis()), maxStatements,
+                    maxTimeMs);
+        }
+        for (Map.Entry<String, Integer> entry : stats.repeated(repeatedThreshold).entrySet()) {
+            log.warn("{} {}: возможно N+1 - SQL выполнен {} раз: {}", request.getMethod(), request.getRequestURI(),
+                    entry.getValue(), entry.getKey());
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+
+    // Добавляет Server-Timing один раз: перед фиксацией ответа (первое обращение к телу, flushBuffer,
+    // sendError, sendRedirect) или после обработки, если ответ ещё не зафиксирован
+    private static class TimingResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private final StatementStats stats;
+        private final long started;
+        private boolean added;
+
+        private TimingResponse(HttpServletRequest request, HttpServletResponse response, StatementStats stats,
+                               long started) {
+            super(response);
+            this.request = request;
+            this.stats = stats;
+            this.started = started;
+        }
+
+        private void addTiming() {
+            if (added || isCommitted() || request.isAsyncStarted() || ExportTimeoutConfig.isExport(request)) {
+                return;
+            }
+            added = true;
+            double appMillis = (System.nanoTime() - started) / 1_000_000.0;
+            addHeader(HEADER, "db;dur=" + format(stats.getMillis()) + ";desc=\"" + stats.getStatements()
+                    + " statements\", app;dur=" + format(appMillis));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addTiming();
+            super.sendRedirect(location);
+        }
+    }
+}
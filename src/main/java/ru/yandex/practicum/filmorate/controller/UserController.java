@@ -1,11 +1,19 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+import ru.yandex.practicum.filmorate.model.FeedEntry;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.validation.OnCreate;
 import ru.yandex.practicum.filmorate.validation.OnUpdate;
@@ -19,10 +27,17 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final FeedService feedService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService,
+                          FeedService feedService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.feedService = feedService;
+        this.objectMapper = objectMapper;
     }
 
     // Получение всех пользователей
@@ -31,6 +46,24 @@ public class UserController {
         return userService.getAllUsers();
     }
 
+    // Постраничное получение пользователей: limit - размер страницы, after - курсор из предыдущего ответа
+    @GetMapping(params = "limit")
+    public CursorPage<User> getUsersPage(@RequestParam int limit, @RequestParam(required = false) Long after) {
+        return userService.getUsersPage(after, limit);
+    }
+
+    // Потоковая выгрузка всех пользователей в формате NDJSON
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(HttpServletRequest request) {
+        ExportTimeoutConfig.markExport(request);
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                userService.exportUsers(writer::write);
+            }
+        };
+        return ResponseEntity.ok().contentType(NdjsonWriter.APPLICATION_NDJSON).body(body);
+    }
+
     // Получение пользователя по ID
     @GetMapping("/{id}")
     public ResponseEntity<User> getUserById(@PathVariable Long id) {
@@ -68,6 +101,24 @@ public class UserController {
         return userService.getFriends(id);
     }
 
+    // Рекомендации друзей по числу общих друзей
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        return userService.getFriendSuggestions(id, count);
+    }
+
+    // Рекомендации фильмов по совместным лайкам
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        return recommendationService.getRecommendations(id, count);
+    }
+
+    // Лента: фильмы, недавно понравившиеся друзьям пользователя, от новых к старым
+    @GetMapping("/{id}/feed")
+    public List<FeedEntry> getFeed(@PathVariable Long id, @RequestParam(defaultValue = "20") int count) {
+        return feedService.getFeed(id, count);
+    }
+
     // Получение общих друзей двух пользователей
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
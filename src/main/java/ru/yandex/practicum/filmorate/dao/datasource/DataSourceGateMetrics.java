@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.dao.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+// Метрики ограничителя соединений (filmorate.db.gate.*). Метрики самого пула (hikaricp.connections.active,
+// idle, pending и время получения соединения hikaricp.connections.acquire) регистрирует Spring Boot.
+@Component
+@ConditionalOnProperty(name = "filmorate.db.gate.enabled", havingValue = "true")
+public class DataSourceGateMetrics implements MeterBinder {
+    private final GatedDataSource gate;
+
+    public DataSourceGateMetrics(DataSource dataSource) throws SQLException {
+        this.gate = dataSource.unwrap(GatedDataSource.class);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gate.bindTo(registry);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.dao.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// Оборачивает DataSource приложения в GatedDataSource; включается настройкой filmorate.db.gate.enabled
+// (по умолчанию - вместе с виртуальными потоками, spring.threads.virtual.enabled)
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.db.gate.enabled", havingValue = "true")
+public class DataSourceGatePostProcessor implements BeanPostProcessor {
+    private final int permits;
+    private final long timeoutMs;
+
+    public DataSourceGatePostProcessor(@Value("${filmorate.db.gate.permits:10}") int permits,
+                                       @Value("${filmorate.db.gate.timeout-ms:30000}") long timeoutMs) {
+        this.permits = permits;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof GatedDataSource)) {
+            log.info("Одновременных обращений к базе данных через {} не больше {}", beanName, permits);
+            return new GatedDataSource(dataSource, permits, timeoutMs);
+        }
+        return bean;
+    }
+}
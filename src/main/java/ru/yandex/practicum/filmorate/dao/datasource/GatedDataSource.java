@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.dao.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Ограничение числа одновременно выданных соединений: разрешение семафора берётся при получении
+// соединения и возвращается при его закрытии. С виртуальными потоками запросов может быть намного
+// больше, чем соединений в пуле; лишние ждут на семафоре в порядке очереди - ожидание не занимает
+// поток-носитель, - а не в пуле, где их ограничивает таймаут ожидания соединения.
+public class GatedDataSource extends DelegatingDataSource implements MeterBinder {
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final long timeoutMs;
+    private volatile Timer acquireTimer; // null до привязки к реестру метрик
+
+    public GatedDataSource(DataSource target, int permits, long timeoutMs) {
+        super(target);
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Число разрешений должно быть больше 0.");
+        }
+        this.permits = new Semaphore(permits, true);
+        this.maxPermits = permits;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return gated(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return gated(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    // Число соединений, выданных в данный момент
+    public int getActiveConnections() {
+        return maxPermits - permits.availablePermits();
+    }
+
+    // Приблизительное число потоков, ожидающих соединения
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.db.gate.permits", this, GatedDataSource::getMaxPermits)
+                .register(registry);
+        Gauge.builder("filmorate.db.gate.active", this, GatedDataSource::getActiveConnections)
+                .register(registry);
+        Gauge.builder("filmorate.db.gate.waiting", this, GatedDataSource::getWaitingThreads)
+                .register(registry);
+        acquireTimer = Timer.builder("filmorate.db.gate.acquire")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void acquire() throws SQLException {
+        long started = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+            Timer timer = acquireTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            if (!acquired) {
+                throw new SQLTransientConnectionException("Нет свободного соединения с базой данных за "
+                        + timeoutMs + " мс: выдано " + maxPermits + ", ожидают " + permits.getQueueLength());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Ожидание соединения с базой данных прервано", e);
+        }
+    }
+
+    // Соединение, возвращающее разрешение при первом закрытии; остальные вызовы передаются как есть
+    private Connection gated(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    boolean close = method.getName().equals("close") && method.getParameterCount() == 0;
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if (close && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.dao.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Учёт выполненных операторов в StatementStats текущего потока. Если учёт в потоке не ведётся,
+// соединение выдаётся без обёртки и накладных расходов нет.
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private static Connection counting(Connection connection) {
+        StatementStats stats = StatementStats.current();
+        if (stats == null) {
+            return connection;
+        }
+        return proxy(Connection.class, (proxy, method, args) -> {
+            // Соединение сравнивается по ссылке на обёртку (так его сравнивает DataSourceUtils)
+            if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement statement) {
+                // У подготовленного оператора SQL известен при создании, у обычного - при выполнении
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return countingStatement(statement, method.getReturnType(), sql, stats);
+            }
+            return result;
+        });
+    }
+
+    private static Object countingStatement(Statement statement, Class<?> type, String preparedSql,
+                                            StatementStats stats) {
+        Class<?> iface = type == CallableStatement.class || type == PreparedStatement.class ? type : Statement.class;
+        return proxy(iface, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                return invoke(statement, method, args);
+            }
+            String sql = preparedSql != null ? preparedSql
+                    : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+            long started = System.nanoTime();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                stats.record(sql, System.nanoTime() - started);
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> iface, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface}, handler);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.dao.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// Оборачивает DataSource приложения в StatementCountingDataSource; включается настройкой
+// filmorate.db.statement-stats.enabled=true. С GatedDataSource сочетается в любом порядке: оба - DelegatingDataSource,
+// и unwrap находит нужную обёртку
+@Component
+@ConditionalOnProperty(name = "filmorate.db.statement-stats.enabled", havingValue = "true")
+public class StatementCountingPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+            return new StatementCountingDataSource(dataSource);
+        }
+        return bean;
+    }
+}
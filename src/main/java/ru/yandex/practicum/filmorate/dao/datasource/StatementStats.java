@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.dao.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Обращения к базе данных в рамках одного HTTP-запроса: число выполненных операторов, их суммарное время
+// и число выполнений каждого SQL (один и тот же SQL много раз за запрос - признак N+1).
+// Статистика привязывается к потоку запроса; операторы других потоков (например, потоковой выгрузки) не учитываются.
+public class StatementStats {
+    private static final ThreadLocal<StatementStats> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicInteger> executionsBySql = new ConcurrentHashMap<>();
+
+    // Начало учёта в текущем потоке
+    public static StatementStats start() {
+        StatementStats stats = new StatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    // Статистика текущего потока или null, если учёт не ведётся
+    public static StatementStats current() {
+        return CURRENT.get();
+    }
+
+    public void record(String sql, long elapsedNanos) {
+        statements.incrementAndGet();
+        nanos.addAndGet(elapsedNanos);
+        executionsBySql.computeIfAbsent(sql != null ? sql : "?", key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public int getStatements() {
+        return statements.get();
+    }
+
+    public double getMillis() {
+        return nanos.get() / 1_000_000.0;
+    }
+
+    // SQL, выполненный не меньше threshold раз, с числом выполнений
+    public Map<String, Integer> repeated(int threshold) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        executionsBySql.forEach((sql, count) -> {
+            if (count.get() >= threshold) {
+                result.put(sql, count.get());
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.dao.dictionary;
+
+// Публикуется после перезагрузки справочников жанров и рейтингов
+public record DictionaryReloadedEvent(int genres, int ratings) {
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.dao.dictionary;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.genre.GenreDao;
+import ru.yandex.practicum.filmorate.dao.rating.RatingDao;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.util.List;
+
+// Справочники жанров и рейтингов MPA, загружаемые в память при старте.
+// Экземпляры хранятся в массивах, индексированных по ID, и разделяются всеми фильмами.
+// После изменения таблиц genres или ratings справочник нужно явно перезагрузить методом reload.
+@Slf4j
+@Component
+public class ReferenceDictionary {
+    // Справочники маленькие, ID больше этого значения считаются ошибкой данных
+    private static final int MAX_ID = 1 << 16;
+
+    private final GenreDao genreDao;
+    private final RatingDao ratingDao;
+    private final ApplicationEventPublisher eventPublisher;
+    // Массивы и списки подменяются целиком, поэтому читатели всегда видят согласованное состояние
+    private volatile Snapshot snapshot = new Snapshot(new Genre[0], List.of(), new Rating[0], List.of());
+
+    public ReferenceDictionary(GenreDao genreDao, RatingDao ratingDao, ApplicationEventPublisher eventPublisher) {
+        this.genreDao = genreDao;
+        this.ratingDao = ratingDao;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void load() {
+        snapshot = readSnapshot();
+        log.info("Загружены справочники: жанров={}, рейтингов={}", snapshot.genreList().size(),
+                snapshot.ratingList().size());
+    }
+
+    // Перечитывание справочников из базы данных с уведомлением зависимых компонентов (кэшей фильмов)
+    public void reload() {
+        load();
+        eventPublisher.publishEvent(new DictionaryReloadedEvent(snapshot.genreList().size(),
+                snapshot.ratingList().size()));
+    }
+
+    // Жанры в порядке возрастания ID
+    public List<Genre> getAllGenres() {
+        return snapshot.genreList();
+    }
+
+    // Жанр по ID или null, если такого жанра нет
+    public Genre getGenre(Long id) {
+        Genre[] genres = snapshot.genres();
+        return id != null && id >= 0 && id < genres.length ? genres[id.intValue()] : null;
+    }
+
+    public boolean genreExists(Long id) {
+        return getGenre(id) != null;
+    }
+
+    // Рейтинги в порядке возрастания ID
+    public List<Rating> getAllRatings() {
+        return snapshot.ratingList();
+    }
+
+    // Рейтинг по ID или null, если такого рейтинга нет
+    public Rating getRating(Long id) {
+        Rating[] ratings = snapshot.ratings();
+        return id != null && id >= 0 && id < ratings.length ? ratings[id.intValue()] : null;
+    }
+
+    public boolean ratingExists(Long id) {
+        return getRating(id) != null;
+    }
+
+    private Snapshot readSnapshot() {
+        List<Genre> genreList = List.copyOf(genreDao.getAllGenres());
+        List<Rating> ratingList = List.copyOf(ratingDao.getAllRatings());
+
+        Genre[] genres = new Genre[arraySize(genreList.stream().mapToLong(Genre::getId).max().orElse(0), "жанра")];
+        genreList.forEach(genre -> genres[genre.getId().intValue()] = genre);
+
+        Rating[] ratings = new Rating[arraySize(ratingList.stream().mapToLong(Rating::getId).max().orElse(0),
+                "рейтинга")];
+        ratingList.forEach(rating -> ratings[rating.getId().intValue()] = rating);
+
+        return new Snapshot(genres, genreList, ratings, ratingList);
+    }
+
+    private static int arraySize(long maxId, String kind) {
+        if (maxId >= MAX_ID) {
+            throw new IllegalStateException("Слишком большой ID " + kind + " для справочника: " + maxId);
+        }
+        return (int) maxId + 1;
+    }
+
+    private record Snapshot(Genre[] genres, List<Genre> genreList, Rating[] ratings, List<Rating> ratingList) {
+    }
+}
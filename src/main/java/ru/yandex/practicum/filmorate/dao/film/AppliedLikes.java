@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import java.util.List;
+import java.util.Map;
+
+// Результат записи пакета отложенных операций: новые likes_count фильмов, у которых изменилось число лайков,
+// и операции, которые действительно изменили таблицу likes. У снятых лайков at - время исходного лайка
+public record AppliedLikes(Map<Long, Long> likeCounts, List<LikeOperation> added, List<LikeOperation> removed) {
+}
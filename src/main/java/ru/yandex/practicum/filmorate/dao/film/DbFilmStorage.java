@@ -1,35 +1,174 @@
 package ru.yandex.practicum.filmorate.dao.film;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.dictionary.DictionaryReloadedEvent;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+import ru.yandex.practicum.filmorate.storage.film.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.RecentLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.TrendingIndex;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Component("dbFilmStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 public class DbFilmStorage implements FilmStorage {
 
     public final FilmDao filmDao;
+    private final PopularityIndex popularityIndex = new PopularityIndex("db");
+    // Копия таблицы likes для индексов рекомендаций и похожих фильмов
+    private final LikeStore likes;
+    private final TrendingIndex trendingIndex;
+    private final FilmCache filmCache;
+    // Сколько самых популярных фильмов загружается в кэш при построении индексов
+    private final int filmCacheWarmCount;
+    private final RecentLikeIndex recentLikes;
+    private final Duration feedMaxAge;
+    // Присутствует только в режиме отложенной записи лайков (filmorate.likes.write-behind.enabled)
+    private final LikeWriteBuffer likeWriteBuffer;
 
     @Autowired
-    public DbFilmStorage(FilmDao filmDao) {
+    public DbFilmStorage(FilmDao filmDao, MeterRegistry meterRegistry, ObjectProvider<LikeWriteBuffer> likeWriteBuffer,
+                         LikeStore likes,
+                         @Value("${filmorate.trending.bucket-minutes:60}") long trendingBucketMinutes,
+                         @Value("${filmorate.trending.buckets:168}") int trendingBuckets,
+                         @Value("${filmorate.trending.refresh-ms:5000}") long trendingRefreshMs,
+                         @Value("${filmorate.films.cache.max-size:10000}") int filmCacheMaxSize,
+                         @Value("${filmorate.films.cache.warm-popular:100}") int filmCacheWarmCount,
+                         @Value("${filmorate.feed.likes-per-user:50}") int feedLikesPerUser,
+                         @Value("${filmorate.feed.max-age-days:30}") long feedMaxAgeDays) {
         this.filmDao = filmDao;
+        this.filmCache = new FilmCache(filmCacheMaxSize);
+        this.filmCacheWarmCount = Math.min(filmCacheWarmCount, filmCacheMaxSize);
+        this.recentLikes = new RecentLikeIndex(feedLikesPerUser);
+        this.feedMaxAge = Duration.ofDays(feedMaxAgeDays);
+        this.likeWriteBuffer = likeWriteBuffer.getIfAvailable();
+        this.likes = likes;
+        this.trendingIndex = new TrendingIndex(Duration.ofMinutes(trendingBucketMinutes), trendingBuckets,
+                Duration.ofMillis(trendingRefreshMs));
+        popularityIndex.bindTo(meterRegistry);
+        filmCache.bindTo(meterRegistry);
+        if (this.likeWriteBuffer != null) {
+            this.likeWriteBuffer.setFlushListener(this::onLikesFlushed);
+        }
+    }
+
+    // Построение индексов при старте приложения; кэш фильмов при этом сбрасывается
+    @PostConstruct
+    public void rebuildIndexes() {
+        filmCache.clear();
+        rebuildPopularityIndex();
+        rebuildTrendingIndex();
+        rebuildRecentLikes();
+        rebuildLikeStore();
+        warmFilmCache();
+    }
+
+    // Загрузка в кэш самых популярных фильмов, чтобы /films/popular обслуживался без обращений к базе данных.
+    // Фильм, вытесненный из кэша или вошедший в топ позже, загружается по ID при первом запросе
+    public void warmFilmCache() {
+        if (filmCacheWarmCount > 0) {
+            getFilmsByIds(popularityIndex.top(filmCacheWarmCount));
+        }
+    }
+
+    // Фильмы в кэше ссылаются на прежние экземпляры жанров и рейтингов
+    @EventListener
+    public void onDictionaryReloaded(DictionaryReloadedEvent event) {
+        filmCache.clear();
+    }
+
+    // Индекс популярности строится по счётчикам likes_count
+    public void rebuildPopularityIndex() {
+        popularityIndex.clear();
+        filmDao.forEachLikeCount(popularityIndex::set);
+    }
+
+    // Счётчики трендов заполняются лайками за максимальное окно
+    public void rebuildTrendingIndex() {
+        trendingIndex.clear();
+        filmDao.forEachLikeSince(Instant.now().minus(trendingIndex.maxWindow()), trendingIndex::record);
+    }
+
+    // Буферы ленты заполняются лайками не старше feedMaxAge в порядке времени
+    public void rebuildRecentLikes() {
+        recentLikes.clear();
+        filmDao.forEachRecentLike(Instant.now().minus(feedMaxAge), recentLikes::record);
+    }
+
+    // Лайки загружаются без уведомления индексов: после загрузки они перестраиваются целиком
+    public void rebuildLikeStore() {
+        likes.clear();
+        filmDao.forEachLike(likes::load);
     }
 
     @Override
     public Long createFilm(Film film) {
-        return filmDao.createFilm(film);
+        Long filmId = filmDao.createFilm(film);
+        popularityIndex.add(filmId);
+        return filmId;
+    }
+
+    @Override
+    public List<Long> createFilms(List<Film> films) {
+        List<Long> filmIds = filmDao.createFilms(films);
+        filmIds.forEach(popularityIndex::add);
+        return filmIds;
     }
 
     @Override
     public void updateFilm(Film film) {
-        filmDao.updateFilm(film);
+        // Кэш сбрасывается и при ошибке: часть изменений (например, жанры) могла успеть записаться
+        try {
+            filmDao.updateFilm(film);
+        } finally {
+            filmCache.invalidate(film.getId());
+        }
     }
 
+    // Сначала кэш, при промахе - база данных
     @Override
     public Film getFilmById(Long id) {
-        return filmDao.getFilmById(id);
+        if (id == null) {
+            throw new IllegalArgumentException("ID фильма не может быть null.");
+        }
+        Film film = filmCache.get(id);
+        if (film == null) {
+            long load = filmCache.startLoad(id);
+            try {
+                film = filmDao.getFilmById(id);
+                filmCache.put(film, load);
+            } finally {
+                filmCache.finishLoad(id, load);
+            }
+        }
+        return film;
+    }
+
+    // В индексе популярности есть все фильмы хранилища
+    @Override
+    public boolean containsFilm(Long id) {
+        return popularityIndex.contains(id);
     }
 
     @Override
@@ -37,23 +176,139 @@ public class DbFilmStorage implements FilmStorage {
         return filmDao.getAllFilms();
     }
 
+    @Override
+    public void forEachFilm(Consumer<Film> consumer) {
+        filmDao.forEachFilm(consumer);
+    }
+
+    @Override
+    public void forEachLike(BiConsumer<Long, Long> consumer) {
+        filmDao.forEachLike(consumer);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(Long afterId, int limit) {
+        return filmDao.getFilmsPage(afterId, limit);
+    }
+
     @Override
     public void removeFilm(Long filmId) {
         filmDao.removeFilm(filmId);
+        filmCache.invalidate(filmId);
+        popularityIndex.remove(filmId);
+        trendingIndex.remove(filmId);
+        likes.removeFilm(filmId);
     }
 
     @Override
     public void addLike(Long filmId, Long userId) {
-        filmDao.addLike(filmId, userId);
+        if (likeWriteBuffer != null) {
+            requireFilmAndUser(filmId, userId);
+            likeWriteBuffer.addLike(filmId, userId, Instant.now()); // индексы обновятся после записи
+            return;
+        }
+        Instant likedAt = Instant.now();
+        if (filmDao.addLike(filmId, userId, likedAt)) {
+            popularityIndex.increment(filmId);
+            trendingIndex.record(filmId, likedAt);
+            recentLikes.record(filmId, userId, likedAt);
+            likes.add(filmId, userId);
+        }
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
-        filmDao.removeLike(filmId, userId);
+        if (likeWriteBuffer != null) {
+            requireFilmAndUser(filmId, userId);
+            likeWriteBuffer.removeLike(filmId, userId, Instant.now());
+            return;
+        }
+        Instant likedAt = filmDao.removeLike(filmId, userId);
+        popularityIndex.decrement(filmId);
+        trendingIndex.retract(filmId, likedAt);
+        recentLikes.retract(filmId, userId);
+        likes.remove(filmId, userId);
+    }
+
+    // Индексы в режиме отложенной записи обновляются по записанному пакету: повторный лайк и снятие
+    // несуществующего лайка не меняют ни тренды, ни ленту
+    private void onLikesFlushed(AppliedLikes applied) {
+        applied.likeCounts().forEach(popularityIndex::set);
+        for (LikeOperation like : applied.added()) {
+            trendingIndex.record(like.filmId(), like.at());
+            recentLikes.record(like.filmId(), like.userId(), like.at());
+            likes.add(like.filmId(), like.userId());
+        }
+        for (LikeOperation unlike : applied.removed()) {
+            trendingIndex.retract(unlike.filmId(), unlike.at());
+            recentLikes.retract(unlike.filmId(), unlike.userId());
+            likes.remove(unlike.filmId(), unlike.userId());
+        }
+    }
+
+    // Проверка перед постановкой в очередь отложенной записи: фильм - по индексу популярности (в нём есть
+    // все фильмы хранилища), пользователь - запросом по первичному ключу. Операции с фильмами и пользователями,
+    // удалёнными уже после постановки, отбрасываются при записи
+    private void requireFilmAndUser(Long filmId, Long userId) {
+        if (!popularityIndex.contains(filmId)) {
+            throw new FilmNotFoundException("Фильм с ID " + filmId + " не существует.");
+        }
+        filmDao.requireUser(userId);
+    }
+
+    // Удалённые фильмы остаются в буферах до вытеснения и отсеиваются по индексу популярности
+    @Override
+    public List<RecentLikeIndex.RecentLike> getRecentLikes(long[] userIds, int count) {
+        return recentLikes.merge(userIds, count, Instant.now().minus(feedMaxAge), popularityIndex::contains);
     }
 
     @Override
     public List<Film> getMostPopularFilms(int count) {
-        return filmDao.getMostPopularFilms(count);
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество популярных фильмов должно быть больше 0.");
+        }
+        // Порядок берём из индекса, из базы данных загружаются только сами фильмы
+        List<Long> ids = popularityIndex.top(count);
+        List<Film> films = getFilmsByIds(ids);
+        if (films.size() < ids.size()) {
+            // Фильмы удалены в обход хранилища - убираем их из индекса и повторяем выборку
+            Set<Long> missing = new HashSet<>(ids);
+            films.forEach(film -> missing.remove(film.getId()));
+            missing.forEach(popularityIndex::remove);
+            return getMostPopularFilms(count);
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> getTrendingFilms(Duration window, int count) {
+        return getFilmsByIds(trendingIndex.top(window, count));
+    }
+
+    @Override
+    public Duration getMaxTrendingWindow() {
+        return trendingIndex.maxWindow();
+    }
+
+    // Фильмы в порядке ids: найденные в кэше берутся из него, остальные загружаются одним запросом
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        Map<Long, Film> cached = filmCache.getAll(ids);
+        if (cached.size() < ids.size()) {
+            List<Long> missing = ids.stream().filter(id -> !cached.containsKey(id)).distinct().toList();
+            Map<Long, Long> loads = new HashMap<>();
+            missing.forEach(id -> loads.put(id, filmCache.startLoad(id)));
+            try {
+                for (Film film : filmDao.getFilmsByIds(missing)) {
+                    filmCache.put(film, loads.get(film.getId()));
+                    cached.put(film.getId(), film);
+                }
+            } finally {
+                loads.forEach(filmCache::finishLoad);
+            }
+        }
+        List<Film> films = new ArrayList<>(ids.size());
+        ids.stream().map(cached::get).filter(Objects::nonNull).forEach(films::add);
+        return films;
     }
-}
\ No newline at end of file
+}
@@ -3,53 +3,71 @@ package ru.yandex.practicum.filmorate.dao.film;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
 import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 
 import java.sql.*;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 public class FilmDao {
     private static final Logger log = LoggerFactory.getLogger(FilmDao.class);
 
+    // Базовый запрос фильмов; рейтинг берётся из справочника, жанры догружаются отдельно в loadGenres
+    private static final String SELECT_FILMS = """
+                SELECT f.id, f.name, f.description, f.release_date, f.duration, f.rating_id
+                FROM films f
+            """;
+    private static final String INSERT_FILM =
+            "INSERT INTO films (name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
+    private static final int MAX_IN_LIST_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
     public final JdbcTemplate jdbcTemplate;
+    private final ReferenceDictionary referenceDictionary;
+
+    // Потребитель лайков с временем постановки
+    @FunctionalInterface
+    public interface LikeVisitor {
+        void accept(long filmId, long userId, Instant likedAt);
+    }
 
-    public FilmDao(JdbcTemplate jdbcTemplate) {
+    public FilmDao(JdbcTemplate jdbcTemplate, ReferenceDictionary referenceDictionary) {
         this.jdbcTemplate = jdbcTemplate;
+        this.referenceDictionary = referenceDictionary;
     }
 
+    @Transactional
     public Long createFilm(Film film) {
-        // Проверка обязательных полей
-        if (film.getName() == null || film.getName().isEmpty()) {
-            throw new IllegalArgumentException("Название фильма не может быть пустым.");
-        }
-        if (film.getDescription() == null) {
-            throw new IllegalArgumentException("Описание фильма не может быть null.");
-        }
-        if (film.getReleaseDate() == null) {
-            throw new IllegalArgumentException("Дата релиза фильма не может быть null.");
-        }
-        if (film.getDuration() <= 0) {
-            throw new IllegalArgumentException("Продолжительность фильма должна быть положительной.");
-        }
-
-        // Проверка существования рейтинга (MPA)
-        if (film.getMpa() != null && !mpaExists(film.getMpa().getId())) {
-            log.warn("Рейтинг с ID {} не существует.", film.getMpa().getId());
-            throw new IllegalArgumentException("Рейтинг с ID " + film.getMpa().getId() + " не существует.");
-        }
+        validateNewFilm(film);
 
         // Получение идентификаторов жанров
         List<Long> genreIds = film.getGenres() != null
@@ -60,27 +78,12 @@ public class FilmDao {
 
         log.debug("Genre IDs: {}", genreIds);
 
-        // Проверка существования жанров
-        if (!genreIds.isEmpty()) {
-            for (Long genreId : genreIds) {
-                if (!genreExists(genreId)) {
-                    log.warn("Жанр с ID {} не существует.", genreId);
-                    throw new IllegalArgumentException("Жанр с ID " + genreId + " не существует.");
-                }
-            }
-        }
-
         // SQL-запрос для создания фильма
-        String sql = "INSERT INTO films (name, description, release_date, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, film.getName());
-            ps.setString(2, film.getDescription());
-            ps.setDate(3, Date.valueOf(film.getReleaseDate()));
-            ps.setLong(4, film.getDuration());
-            ps.setObject(5, film.getMpa() != null ? film.getMpa().getId() : null, Types.BIGINT);
+            PreparedStatement ps = connection.prepareStatement(INSERT_FILM, Statement.RETURN_GENERATED_KEYS);
+            setFilmParameters(ps, film);
             return ps;
         }, keyHolder);
 
@@ -99,36 +102,113 @@ public class FilmDao {
         return filmId;
     }
 
-    public Film updateFilm(Film film) {
-        if (!filmExists(film.getId())) {
-            log.warn("Попытка обновить несуществующий фильм с ID: {}", film.getId());
-            throw new IllegalArgumentException("Фильм с ID " + film.getId() + " не существует.");
+    // Пакетное создание фильмов в одной транзакции: фильмы вставляются одним JDBC-батчем
+    // с получением сгенерированных ключей, связи с жанрами - вторым батчем.
+    // Возвращает ID созданных фильмов в порядке входного списка.
+    @Transactional
+    public List<Long> createFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return List.of();
+        }
+        films.forEach(this::validateNewFilm);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmParameters(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            throw new RuntimeException("Не удалось создать фильмы: получено " + keys.size() + " ID для "
+                    + films.size() + " фильмов.");
+        }
+
+        List<Long> filmIds = new ArrayList<>(films.size());
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Long filmId = ((Number) keys.get(i).values().iterator().next()).longValue();
+            filmIds.add(filmId);
+            List<Genre> genres = films.get(i).getGenres();
+            if (genres != null) {
+                genres.stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .forEach(genreId -> filmGenres.add(new Object[]{filmId, genreId}));
+            }
+        }
+        if (!filmGenres.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmGenres);
         }
 
+        log.debug("Пакетно создано фильмов: {}, связей с жанрами: {}", filmIds.size(), filmGenres.size());
+        return filmIds;
+    }
+
+    // Проверка обязательных полей, рейтинга и жанров нового фильма
+    private void validateNewFilm(Film film) {
+        // Проверка обязательных полей
+        if (film.getName() == null || film.getName().isEmpty()) {
+            throw new IllegalArgumentException("Название фильма не может быть пустым.");
+        }
+        if (film.getDescription() == null) {
+            throw new IllegalArgumentException("Описание фильма не может быть null.");
+        }
+        if (film.getReleaseDate() == null) {
+            throw new IllegalArgumentException("Дата релиза фильма не может быть null.");
+        }
+        if (film.getDuration() <= 0) {
+            throw new IllegalArgumentException("Продолжительность фильма должна быть положительной.");
+        }
+
+        // Проверка существования рейтинга (MPA) и жанров
+        validateReferences(film);
+    }
+
+    private static void setFilmParameters(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+        ps.setLong(4, film.getDuration());
+        ps.setObject(5, film.getMpa() != null ? film.getMpa().getId() : null, Types.BIGINT);
+    }
+
+    // Поля фильма и его жанры обновляются в одной транзакции
+    @Transactional
+    public void updateFilm(Film film) {
+        validateReferences(film);
+
         // SQL-запрос для обновления фильма
         String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? " +
                 "WHERE id = ?";
-        jdbcTemplate.update(sql,
+        int updated = jdbcTemplate.update(sql,
                 film.getName(),
                 film.getDescription(),
                 Date.valueOf(film.getReleaseDate()),
                 film.getDuration(),
                 film.getMpa() != null ? film.getMpa().getId() : null, // Получаем ID из объекта Rating
                 film.getId());
+        if (updated == 0) {
+            log.warn("Попытка обновить несуществующий фильм с ID: {}", film.getId());
+            throw new IllegalArgumentException("Фильм с ID " + film.getId() + " не существует.");
+        }
 
         List<Genre> genres = film.getGenres();
         if (genres != null && !genres.isEmpty()) {
-            // Удаляем старые жанры фильма
-            deleteGenresByFilmId(film.getId());
-            // Добавляем новые жанры фильма
-            addGenresToFilm(film.getId(), genres.stream()
+            replaceGenres(film.getId(), genres.stream()
                     .map(Genre::getId) // Преобразуем список Genre в список их ID
                     .toList());
         } else {
             log.debug("Жанры для фильма с ID {} не были переданы. Старые жанры остаются без изменений.", film.getId());
         }
-
-        return getFilmById(film.getId());
     }
 
     public Film getFilmById(Long id) {
@@ -136,73 +216,14 @@ public class FilmDao {
             throw new IllegalArgumentException("ID фильма не может быть null.");
         }
 
-        String sql = """
-                    SELECT\s
-                        f.id AS film_id,
-                        f.name AS film_name,
-                        f.description AS film_description,
-                        f.release_date AS film_release_date,
-                        f.duration AS film_duration,
-                        r.id AS rating_id,
-                        r.name AS rating_name,
-                        COALESCE(GROUP_CONCAT(DISTINCT g.id ORDER BY g.id), '') AS genre_ids,
-                        COALESCE(GROUP_CONCAT(DISTINCT g.name ORDER BY g.id), '') AS genre_names
-                    FROM\s
-                        films f
-                    LEFT JOIN\s
-                        ratings r ON f.rating_id = r.id
-                    LEFT JOIN\s
-                        film_genres fg ON f.id = fg.film_id
-                    LEFT JOIN\s
-                        genres g ON fg.genre_id = g.id
-                    WHERE\s
-                        f.id = ?
-                    GROUP BY\s
-                        f.id, r.id;
-               \s""";
+        String sql = SELECT_FILMS + "WHERE f.id = ?";
 
         log.debug("Выполняется запрос на получение фильма с ID: {}", id);
 
         try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-                Film film = new Film();
-                film.setId(rs.getLong("film_id"));
-                film.setName(rs.getString("film_name"));
-                film.setDescription(rs.getString("film_description"));
-                film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
-                film.setDuration(rs.getLong("film_duration"));
-
-                // Устанавливаем рейтинг (MPA)
-                Long ratingId = rs.getObject("rating_id") != null ? rs.getLong("rating_id") : null;
-                if (ratingId != null) {
-                    Rating rating = new Rating();
-                    rating.setId(ratingId);
-                    rating.setName(rs.getString("rating_name"));
-                    film.setMpa(rating);
-                } else {
-                    film.setMpa(null); // Если рейтинг отсутствует
-                }
-
-                // Устанавливаем жанры
-                String genreIdsStr = rs.getString("genre_ids");
-                String genreNamesStr = rs.getString("genre_names");
-
-                List<Genre> genres = new ArrayList<>();
-                if (!genreIdsStr.isEmpty() && !genreNamesStr.isEmpty()) {
-                    String[] genreIds = genreIdsStr.split(",");
-                    String[] genreNames = genreNamesStr.split(",");
-
-                    for (int i = 0; i < genreIds.length; i++) {
-                        Genre genre = new Genre();
-                        genre.setId(Long.parseLong(genreIds[i]));
-                        genre.setName(genreNames[i]);
-                        genres.add(genre);
-                    }
-                }
-                film.setGenres(genres);
-
-                return film;
-            }, id);
+            Film film = jdbcTemplate.queryForObject(sql, this::mapRowToFilm, id);
+            loadGenres(List.of(film));
+            return film;
         } catch (EmptyResultDataAccessException e) {
             log.warn("Фильм с ID {} не найден", id);
             throw new FilmNotFoundException("Фильм с ID " + id + " не существует.");
@@ -213,160 +234,121 @@ public class FilmDao {
     }
 
     public List<Film> getAllFilms() {
-        String sql = """
-                    SELECT\s
-                        f.id AS film_id,
-                        f.name AS film_name,
-                        f.description AS film_description,
-                        f.release_date AS film_release_date,
-                        f.duration AS film_duration,
-                        r.id AS rating_id,
-                        r.name AS rating_name,
-                        COALESCE(GROUP_CONCAT(DISTINCT g.id ORDER BY g.id), '') AS genre_ids,
-                        COALESCE(GROUP_CONCAT(DISTINCT g.name ORDER BY g.id), '') AS genre_names
-                    FROM\s
-                        films f
-                    LEFT JOIN\s
-                        ratings r ON f.rating_id = r.id
-                    LEFT JOIN\s
-                        film_genres fg ON f.id = fg.film_id
-                    LEFT JOIN\s
-                        genres g ON fg.genre_id = g.id
-                    GROUP BY\s
-                        f.id, r.id;
-               \s""";
+        String sql = SELECT_FILMS + "ORDER BY f.id";
 
         log.debug("Выполняется запрос на получение всех фильмов");
 
         try {
-            return jdbcTemplate.query(sql, (rs, rowNum) -> {
-                Film film = new Film();
-                film.setId(rs.getLong("film_id"));
-                film.setName(rs.getString("film_name"));
-                film.setDescription(rs.getString("film_description"));
-                film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
-                film.setDuration(rs.getLong("film_duration"));
-
-                // Устанавливаем рейтинг (MPA)
-                Long ratingId = rs.getObject("rating_id") != null ? rs.getLong("rating_id") :
-                        null;
-                if (ratingId != null) {
-                    Rating rating = new Rating();
-                    rating.setId(ratingId);
-                    rating.setName(rs.getString("rating_name"));
-                    film.setMpa(rating);
-                } else {
-                    film.setMpa(null); // Если рейтинг отсутствует
-                }
-
-                // Устанавливаем жанры
-                String genreIdsStr = rs.getString("genre_ids");
-                String genreNamesStr = rs.getString("genre_names");
-
-                List<Genre> genres = new ArrayList<>();
-                if (!genreIdsStr.isEmpty() && !genreNamesStr.isEmpty()) {
-                    String[] genreIds = genreIdsStr.split(",");
-                    String[] genreNames = genreNamesStr.split(",");
-
-                    for (int i = 0; i < genreIds.length; i++) {
-                        Genre genre = new Genre();
-                        genre.setId(Long.parseLong(genreIds[i]));
-                        genre.setName(genreNames[i]);
-                        genres.add(genre);
-                    }
-                }
-                film.setGenres(genres);
-
-                return film;
-            });
+            return loadGenres(jdbcTemplate.query(sql, this::mapRowToFilm));
         } catch (DataAccessException e) {
             log.error("Ошибка при получении списка фильмов", e);
             throw new RuntimeException("Не удалось получить список фильмов", e);
         }
     }
 
-    public List<Film> getMostPopularFilms(int count) {
-        if (count <= 0) {
-            throw new IllegalArgumentException("Количество популярных фильмов должно быть больше 0.");
+    // Постраничная выборка по ID (keyset): каждая страница - диапазонное чтение первичного ключа
+    public List<Film> getFilmsPage(Long afterId, int limit) {
+        String sql = SELECT_FILMS + "WHERE f.id > ? ORDER BY f.id LIMIT ?";
+
+        log.debug("Выполняется запрос страницы фильмов: after={}, limit={}", afterId, limit);
+
+        try {
+            return loadGenres(jdbcTemplate.query(sql, this::mapRowToFilm, afterId != null ? afterId : 0L, limit));
+        } catch (DataAccessException e) {
+            log.error("Ошибка при получении страницы фильмов после ID {}", afterId, e);
+            throw new RuntimeException("Не удалось получить список фильмов", e);
         }
+    }
 
+    // Потоковый обход всех фильмов с жанрами: строки читаются курсором порциями по EXPORT_FETCH_SIZE,
+    // фильм передаётся потребителю, как только прочитаны все его строки
+    public void forEachFilm(Consumer<Film> consumer) {
         String sql = """
-                    SELECT\s
-                        f.id AS film_id,
-                        f.name AS film_name,
-                        f.description AS film_description,
-                        f.release_date AS film_release_date,
-                        f.duration AS film_duration,
-                        r.id AS rating_id,
-                        r.name AS rating_name,
-                        COALESCE(GROUP_CONCAT(DISTINCT g.id ORDER BY g.id), '') AS genre_ids,
-                        COALESCE(GROUP_CONCAT(DISTINCT g.name ORDER BY g.id), '') AS genre_names
-                    FROM\s
-                        films f
-                    LEFT JOIN\s
-                        ratings r ON f.rating_id = r.id
-                    LEFT JOIN\s
-                        film_genres fg ON f.id = fg.film_id
-                    LEFT JOIN\s
-                        genres g ON fg.genre_id = g.id
-                    LEFT JOIN\s
-                        likes l ON f.id = l.film_id
-                    GROUP BY\s
-                        f.id, r.id
-                    ORDER BY\s
-                        COUNT(l.user_id) DESC
-                    LIMIT ?;
+                    SELECT f.id, f.name, f.description, f.release_date, f.duration, f.rating_id, fg.genre_id
+                    FROM films f
+                    LEFT JOIN film_genres fg ON f.id = fg.film_id
+                    ORDER BY f.id, fg.genre_id
                \s""";
 
-        log.debug("Выполняется запрос на получение {} самых популярных фильмов", count);
-
-        try {
-            return jdbcTemplate.query(sql, (rs, rowNum) -> {
-                Film film = new Film();
-                film.setId(rs.getLong("film_id"));
-                film.setName(rs.getString("film_name"));
-                film.setDescription(rs.getString("film_description"));
-                film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
-                film.setDuration(rs.getLong("film_duration"));
-
-                // Устанавливаем рейтинг (MPA)
-                Long ratingId = rs.getObject("rating_id") != null ? rs.getLong("rating_id") :
-                        null;
-                if (ratingId != null) {
-                    Rating rating = new Rating();
-                    rating.setId(ratingId);
-                    rating.setName(rs.getString("rating_name"));
-                    film.setMpa(rating);
-                } else {
-                    film.setMpa(null); // Если рейтинг отсутствует
+        Film[] current = new Film[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            long filmId = rs.getLong("id");
+            if (current[0] == null || current[0].getId() != filmId) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
                 }
+                current[0] = mapRowToFilm(rs, 0);
+                current[0].setGenres(new ArrayList<>());
+            }
+            long genreId = rs.getLong("genre_id");
+            if (!rs.wasNull()) {
+                current[0].getGenres().add(genreOf(genreId));
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
 
-                // Устанавливаем жанры
-                String genreIdsStr = rs.getString("genre_ids");
-                String genreNamesStr = rs.getString("genre_names");
+    // Получение фильмов по списку ID с сохранением порядка; отсутствующие ID пропускаются
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
 
-                List<Genre> genres = new ArrayList<>();
-                if (!genreIdsStr.isEmpty() && !genreNamesStr.isEmpty()) {
-                    String[] genreIds = genreIdsStr.split(",");
-                    String[] genreNames = genreNamesStr.split(",");
+        String sql = SELECT_FILMS + "WHERE f.id IN (" + placeholders(ids.size()) + ")";
 
-                    for (int i = 0; i < genreIds.length; i++) {
-                        Genre genre = new Genre();
-                        genre.setId(Long.parseLong(genreIds[i]));
-                        genre.setName(genreNames[i]);
-                        genres.add(genre);
-                    }
-                }
-                film.setGenres(genres);
+        log.debug("Выполняется запрос на получение фильмов с ID: {}", ids);
 
-                return film;
-            }, count);
+        try {
+            Map<Long, Film> filmsById = new HashMap<>();
+            loadGenres(jdbcTemplate.query(sql, this::mapRowToFilm, ids.toArray()))
+                    .forEach(film -> filmsById.put(film.getId(), film));
+            return ids.stream()
+                    .map(filmsById::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
         } catch (DataAccessException e) {
-            log.error("Ошибка при получении популярных фильмов", e);
-            throw new RuntimeException("Не удалось получить популярные фильмы", e);
+            log.error("Ошибка при получении фильмов с ID {}", ids, e);
+            throw new RuntimeException("Не удалось получить фильмы", e);
         }
     }
 
+    // Обход счётчиков лайков всех фильмов (для построения индекса популярности)
+    public void forEachLikeCount(BiConsumer<Long, Long> consumer) {
+        jdbcTemplate.query("SELECT id, likes_count FROM films",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getLong("id"), rs.getLong("likes_count")));
+    }
+
+    // Потоковый обход всех лайков (film_id, user_id), упорядоченный по пользователю
+    public void forEachLike(BiConsumer<Long, Long> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT film_id, user_id FROM likes ORDER BY user_id, film_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getLong("film_id"), rs.getLong("user_id")));
+    }
+
+    // Потоковый обход лайков не старше since в порядке времени: (film_id, user_id, created_at)
+    public void forEachRecentLike(Instant since, LikeVisitor visitor) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT film_id, user_id, created_at FROM likes WHERE created_at >= ? ORDER BY created_at",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            ps.setTimestamp(1, Timestamp.from(since));
+            return ps;
+        }, (RowCallbackHandler) rs -> visitor.accept(rs.getLong("film_id"), rs.getLong("user_id"),
+                rs.getTimestamp("created_at").toInstant()));
+    }
+
     public void removeFilm(Long filmId) {
         if (!filmExists(filmId)) {
             log.warn("Попытка удалить несуществующий фильм с ID: {}", filmId);
@@ -387,96 +369,242 @@ public class FilmDao {
         }
     }
 
-    public void addLike(Long filmId, Long userId) {
-        if (!filmExists(filmId)) {
-            log.error("Фильм с ID {} не существует.", filmId);
-            throw new IllegalArgumentException("Фильм с ID " + filmId + " не существует.");
+    // Лайк и счётчик likes_count меняются в одной транзакции; повторный лайк ничего не меняет.
+    // Возвращает true, если лайк добавлен. Существование фильма и пользователя проверяют внешние ключи,
+    // запросы-проверки выполняются только для выбора ошибки при нарушении ограничения.
+    @Transactional
+    public boolean addLike(Long filmId, Long userId, Instant likedAt) {
+        String sql = "INSERT INTO likes (film_id, user_id, created_at) SELECT ?, ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(sql, filmId, userId, Timestamp.from(likedAt), filmId, userId);
+        } catch (DuplicateKeyException e) {
+            // Такой же лайк одновременно добавлен другим запросом
+            inserted = 0;
+        } catch (DataIntegrityViolationException e) {
+            // Нарушен внешний ключ - уточняем, какого объекта нет
+            requireFilmAndUser(filmId, userId);
+            log.error("Ошибка при добавлении лайка: filmId={}, userId={}", filmId, userId, e);
+            throw new RuntimeException("Не удалось добавить лайк", e);
+        } catch (DataAccessException e) {
+            log.error("Ошибка при добавлении лайка: filmId={}, userId={}", filmId, userId, e);
+            throw new RuntimeException("Не удалось добавить лайк", e);
         }
 
-        if (!userExists(userId)) {
-            log.error("Пользователь с ID {} не существует.", userId);
-            throw new IllegalArgumentException("Пользователь с ID " + userId + " не существует.");
+        if (inserted == 0) {
+            log.debug("Лайк уже существует: filmId={}, userId={}", filmId, userId);
+            return false;
         }
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?", filmId);
+        log.debug("Лайк добавлен: filmId={}, userId={}", filmId, userId);
+        return true;
+    }
 
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+    // Удаление лайка; возвращает время, когда лайк был поставлен
+    @Transactional
+    public Instant removeLike(Long filmId, Long userId) {
+        String sql = "SELECT created_at FROM OLD TABLE (DELETE FROM likes WHERE film_id = ? AND user_id = ?)";
+        List<Timestamp> deleted;
         try {
-            jdbcTemplate.update(sql, filmId, userId);
-            log.debug("Лайк добавлен: filmId={}, userId={}", filmId, userId);
+            deleted = jdbcTemplate.queryForList(sql, Timestamp.class, filmId, userId);
         } catch (DataAccessException e) {
-            log.error("Ошибка при добавлении лайка: filmId={}, userId={}", filmId, userId, e);
-            throw new RuntimeException("Не удалось добавить лайк", e);
+            log.error("Ошибка при удалении лайка: filmId={}, userId={}", filmId, userId, e);
+            throw new RuntimeException("Не удалось удалить лайк", e);
+        }
+
+        if (deleted.isEmpty()) {
+            // Лайка нет - уточняем причину: фильм, пользователь или сам лайк
+            requireFilmAndUser(filmId, userId);
+            log.warn("Лайк не найден: filmId={}, userId={}", filmId, userId);
+            throw new IllegalArgumentException("Лайк для фильма с ID " + filmId + " и пользователя с ID "
+                    + userId + " не найден.");
         }
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ?", filmId);
+        log.debug("Лайк удален: filmId={}, userId={}", filmId, userId);
+        return deleted.get(0).toInstant();
     }
 
+    // Проверка существования пользователя перед постановкой лайка в очередь отложенной записи
+    public void requireUser(Long userId) {
+        if (!userExists(userId)) {
+            log.warn("Пользователь с ID {} не существует.", userId);
+            throw new UserNotFoundException("Пользователь с ID " + userId + " не существует.");
+        }
+    }
 
-    public void removeLike(Long filmId, Long userId) {
+    // Проверка существования фильма и пользователя; вызывается только когда запись лайка не удалась
+    private void requireFilmAndUser(Long filmId, Long userId) {
         if (!filmExists(filmId)) {
-            log.error("Фильм с ID {} не существует.", filmId);
-            throw new IllegalArgumentException("Фильм с ID " + filmId + " не существует.");
+            log.warn("Фильм с ID {} не существует.", filmId);
+            throw new FilmNotFoundException("Фильм с ID " + filmId + " не существует.");
         }
+        requireUser(userId);
+    }
 
-        if (!userExists(userId)) {
-            log.error("Пользователь с ID {} не существует.", userId);
-            throw new IllegalArgumentException("Пользователь с ID " + userId + " не существует.");
+    // Обход лайков, поставленных не раньше since (для построения счётчиков трендов)
+    public void forEachLikeSince(Instant since, BiConsumer<Long, Instant> consumer) {
+        jdbcTemplate.query("SELECT film_id, created_at FROM likes WHERE created_at >= ?",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getLong("film_id"),
+                        rs.getTimestamp("created_at").toInstant()),
+                Timestamp.from(since));
+    }
+
+    // Пакетная запись отложенных операций с лайками одной транзакцией. Повторный лайк и снятие
+    // несуществующего лайка ничего не меняют и в результат не попадают. Счётчики likes_count сдвигаются
+    // на разницу действительно добавленных и удалённых строк, без подсчёта лайков фильма; полный пересчёт -
+    // в LikeCounterReconciler.
+    @Transactional
+    public AppliedLikes applyLikeOperations(List<LikeOperation> operations) {
+        List<LikeOperation> likes = new ArrayList<>();
+        List<LikeOperation> unlikes = new ArrayList<>();
+        for (LikeOperation operation : operations) {
+            (operation.like() ? likes : unlikes).add(operation);
         }
 
-        String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        try {
-            int rowsAffected = jdbcTemplate.update(sql, filmId, userId);
-            if (rowsAffected == 0) {
-                log.warn("Лайк не найден: filmId={}, userId={}", filmId, userId);
-                throw new IllegalArgumentException("Лайк для фильма с ID " + filmId + " и пользователя с ID "
-                        + userId + " не найден.");
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        List<LikeOperation> added = new ArrayList<>();
+        if (!likes.isEmpty()) {
+            // Время лайка - время запроса, а не записи пакета; существующий лайк не перезаписывается
+            String sql = "INSERT INTO likes (film_id, user_id, created_at) SELECT ?, ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+            int[] inserted = jdbcTemplate.batchUpdate(sql, likes.stream()
+                    .map(like -> new Object[]{like.filmId(), like.userId(), Timestamp.from(like.at()),
+                            like.filmId(), like.userId()})
+                    .toList());
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    added.add(likes.get(i));
+                    deltas.merge(likes.get(i).filmId(), 1L, Long::sum);
+                }
             }
-            log.debug("Лайк удален: filmId={}, userId={}", filmId, userId);
-        } catch (DataAccessException e) {
-            log.error("Ошибка при удалении лайка: filmId={}, userId={}", filmId, userId, e);
-            throw new RuntimeException("Не удалось удалить лайк", e);
         }
+        List<LikeOperation> removed = new ArrayList<>();
+        if (!unlikes.isEmpty()) {
+            // Время снимаемых лайков читается до удаления - по нему уменьшаются счётчики трендов
+            for (int from = 0; from < unlikes.size(); from += MAX_IN_LIST_SIZE) {
+                List<LikeOperation> chunk = unlikes.subList(from, Math.min(unlikes.size(), from + MAX_IN_LIST_SIZE));
+                jdbcTemplate.query("SELECT film_id, user_id, created_at FROM likes WHERE (film_id, user_id) IN (" +
+                                String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")) + ")",
+                        (RowCallbackHandler) rs -> removed.add(new LikeOperation(rs.getLong("film_id"),
+                                rs.getLong("user_id"), false, rs.getTimestamp("created_at").toInstant())),
+                        chunk.stream()
+                                .flatMap(unlike -> Stream.of(unlike.filmId(), unlike.userId()))
+                                .toArray());
+            }
+            int[] deleted = jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?",
+                    unlikes.stream()
+                            .map(unlike -> new Object[]{unlike.filmId(), unlike.userId()})
+                            .toList());
+            for (int i = 0; i < deleted.length; i++) {
+                if (deleted[i] > 0) {
+                    deltas.merge(unlikes.get(i).filmId(), -1L, Long::sum);
+                }
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (deltas.isEmpty()) {
+            log.debug("Записано операций с лайками: {}, таблица likes не изменилась", operations.size());
+            return new AppliedLikes(Map.of(), added, removed);
+        }
+        jdbcTemplate.batchUpdate("UPDATE films SET likes_count = likes_count + ? WHERE id = ?",
+                deltas.entrySet().stream()
+                        .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                        .collect(Collectors.toList()));
+
+        Map<Long, Long> likeCounts = new HashMap<>();
+        jdbcTemplate.query("SELECT id, likes_count FROM films WHERE id IN (" + placeholders(deltas.size()) + ")",
+                (RowCallbackHandler) rs -> likeCounts.put(rs.getLong("id"), rs.getLong("likes_count")),
+                deltas.keySet().toArray());
+        log.debug("Записано операций с лайками: {}, добавлено лайков: {}, снято: {}", operations.size(),
+                added.size(), removed.size());
+        return new AppliedLikes(likeCounts, added, removed);
     }
 
-    // Добавление жанров фильма
-    public void addGenresToFilm(Long filmId, List<Long> genreIds) {
-        String checkSql = "SELECT COUNT(*) FROM film_genres WHERE film_id = ? AND genre_id = ?";
-        String insertSql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-
-        for (Long genreId : genreIds) {
-            // Проверяем, существует ли запись с такими film_id и genre_id
-            Integer count = jdbcTemplate.queryForObject(checkSql, Integer.class, filmId, genreId);
-            if (count == null || count == 0) {
-                // Если запись не существует, добавляем её
-                jdbcTemplate.update(insertSql, filmId, genreId);
-            }
+    // Пересчёт счётчиков likes_count по таблице likes (после массовой загрузки или при рассинхронизации)
+    @Transactional
+    public int reconcileLikeCounters() {
+        String sql = """
+                    UPDATE films f
+                    SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+                    WHERE likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+               \s""";
+        try {
+            int updated = jdbcTemplate.update(sql);
+            log.debug("Пересчитаны счётчики лайков: исправлено фильмов={}", updated);
+            return updated;
+        } catch (DataAccessException e) {
+            log.error("Ошибка при пересчёте счётчиков лайков", e);
+            throw new RuntimeException("Не удалось пересчитать счётчики лайков", e);
         }
     }
 
-    // Удаление жанров фильма
-    public void deleteGenresByFilmId(Long filmId) {
-        String sql = "DELETE FROM film_genres WHERE film_id = ?";
-        jdbcTemplate.update(sql, filmId);
+    // Добавление жанров фильма одним пакетом; уже привязанные жанры пропускаются
+    public void addGenresToFilm(Long filmId, List<Long> genreIds) {
+        String sql = "MERGE INTO film_genres (film_id, genre_id) KEY (film_id, genre_id) VALUES (?, ?)";
+        jdbcTemplate.batchUpdate(sql, genreIds.stream()
+                .distinct()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList());
     }
 
-    // Получение жанров фильма
-    public List<Genre> getGenresByFilmId(Long filmId) {
-        String sql = "SELECT g.id, g.name " +
-                "FROM genres g " +
-                "JOIN film_genres fg ON g.id = fg.genre_id " +
-                "WHERE fg.film_id = ?";
-        try {
-            return jdbcTemplate.query(sql, this::mapRowToGenre, filmId);
-        } catch (EmptyResultDataAccessException e) {
-            // Возвращаем пустой список, если жанры не найдены
-            return List.of();
+    // Замена жанров фильма по разнице с текущими: добавляются только новые связи и удаляются только лишние,
+    // неизменившийся список жанров не порождает ни одной записи
+    private void replaceGenres(Long filmId, List<Long> genreIds) {
+        Set<Long> current = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT genre_id FROM film_genres WHERE film_id = ?", Long.class, filmId));
+        Set<Long> wanted = new LinkedHashSet<>(genreIds);
+
+        List<Object[]> inserts = wanted.stream()
+                .filter(genreId -> !current.contains(genreId))
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList();
+        List<Object[]> deletes = current.stream()
+                .filter(genreId -> !wanted.contains(genreId))
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList();
+
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?", deletes);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", inserts);
         }
+        log.debug("Жанры фильма с ID {} обновлены: добавлено={}, удалено={}", filmId, inserts.size(), deletes.size());
     }
 
-    public Optional<Rating> getRatingByFilmId(Long filmId) {
-        String sql = "SELECT r.id, r.name FROM ratings r WHERE r.id = (SELECT rating_id FROM films WHERE id = ?)";
-        try {
-            return Optional.ofNullable(jdbcTemplate.queryForObject(sql, this::mapRowToRating, filmId));
-        } catch (EmptyResultDataAccessException e) {
-            return Optional.empty();
+    // Загрузка жанров для всех переданных фильмов одним запросом к film_genres.
+    // Для больших выборок вместо длинного списка IN читается вся таблица связей.
+    private List<Film> loadGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
         }
+
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new ArrayList<>());
+            filmsById.put(film.getId(), film);
+        }
+
+        String sql = "SELECT fg.film_id, fg.genre_id FROM film_genres fg ";
+        Object[] args = {};
+        if (films.size() <= MAX_IN_LIST_SIZE) {
+            sql += "WHERE fg.film_id IN (" + placeholders(films.size()) + ") ";
+            args = filmsById.keySet().toArray();
+        }
+        sql += "ORDER BY fg.film_id, fg.genre_id";
+
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            Film film = filmsById.get(rs.getLong("film_id"));
+            if (film != null) {
+                film.getGenres().add(genreOf(rs.getLong("genre_id")));
+            }
+        }, args);
+        return films;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 
     private Film mapRowToFilm(ResultSet rs, int rowNum) throws SQLException {
@@ -487,30 +615,40 @@ public class FilmDao {
         film.setReleaseDate(rs.getDate("release_date").toLocalDate());
         film.setDuration(rs.getLong("duration"));
 
-        // Создаем объект Rating и устанавливаем его
-        Long ratingId = rs.getLong("rating_id");
+        // Рейтинг берётся из справочника
+        long ratingId = rs.getLong("rating_id");
         if (!rs.wasNull()) {
-            Rating rating = new Rating();
-            rating.setId(ratingId);
-            film.setMpa(rating);
+            film.setMpa(ratingOf(ratingId));
         }
 
         return film;
     }
 
-    private Rating mapRowToRating(ResultSet rs, int rowNum) throws SQLException {
-        Rating rating = new Rating();
-        rating.setId(rs.getLong("id"));
-        rating.setName(rs.getString("name"));
-        return rating;
+    // Общий экземпляр жанра из справочника; жанр, добавленный в базу без перезагрузки справочника, отдаётся без названия
+    private Genre genreOf(long genreId) {
+        Genre genre = referenceDictionary.getGenre(genreId);
+        return genre != null ? genre : new Genre(genreId, null);
     }
 
-    // Метод для маппинга строки ResultSet в объект Genre
-    private Genre mapRowToGenre(ResultSet rs, int rowNum) throws SQLException {
-        Genre genre = new Genre();
-        genre.setId(rs.getLong("id"));
-        genre.setName(rs.getString("name"));
-        return genre;
+    private Rating ratingOf(long ratingId) {
+        Rating rating = referenceDictionary.getRating(ratingId);
+        return rating != null ? rating : new Rating(ratingId, null);
+    }
+
+    // Проверка рейтинга и жанров фильма по справочникам, без обращений к базе данных
+    private void validateReferences(Film film) {
+        if (film.getMpa() != null && !referenceDictionary.ratingExists(film.getMpa().getId())) {
+            log.warn("Рейтинг с ID {} не существует.", film.getMpa().getId());
+            throw new IllegalArgumentException("Рейтинг с ID " + film.getMpa().getId() + " не существует.");
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (!referenceDictionary.genreExists(genre.getId())) {
+                    log.warn("Жанр с ID {} не существует.", genre.getId());
+                    throw new IllegalArgumentException("Жанр с ID " + genre.getId() + " не существует.");
+                }
+            }
+        }
     }
 
     private boolean userExists(Long userId) {
@@ -524,17 +662,4 @@ public class FilmDao {
         Long count = jdbcTemplate.queryForObject(sql, Long.class, filmId);
         return count != null && count > 0;
     }
-
-    private boolean mpaExists(Long ratingId) {
-        String sql = "SELECT COUNT(*) FROM ratings WHERE id = ? AND name IS NOT NULL";
-        Long count = jdbcTemplate.queryForObject(sql, Long.class, ratingId);
-        return count != null && count > 0;
-    }
-
-    private boolean genreExists(Long genreId) {
-        String sql = "SELECT COUNT(*) FROM genres WHERE id = ?";
-        Long count = jdbcTemplate.queryForObject(sql, Long.class, genreId);
-        log.debug("Проверка существования жанра с ID {}: count = {}", genreId, count);
-        return count != null && count > 0;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Периодическая сверка films.likes_count с фактическим числом записей в likes.
+// Расписание задаётся свойством filmorate.likes.reconcile-cron ("-" отключает запуск по расписанию).
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LikeCounterReconciler {
+    private final FilmDao filmDao;
+
+    @Scheduled(cron = "${filmorate.likes.reconcile-cron:-}")
+    public int reconcile() {
+        int updated = filmDao.reconcileLikeCounters();
+        if (updated > 0) {
+            log.warn("Обнаружено и исправлено расхождение счётчиков лайков у {} фильмов", updated);
+        } else {
+            log.info("Счётчики лайков согласованы с таблицей likes");
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import java.time.Instant;
+
+// Отложенная операция над лайком: like = true - поставить лайк, false - удалить; at - время запроса
+public record LikeOperation(long filmId, long userId, boolean like, Instant at) {
+}
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.dao.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Режим отложенной записи лайков (write-behind): операции попадают в ограниченную очередь,
+// схлопываются по паре (фильм, пользователь) и записываются в базу пакетами JDBC
+// при накоплении batch-size операций или по истечении flush-interval-ms.
+// Переполненная очередь блокирует вызывающий поток, пока фоновая запись не освободит место.
+// Постановка в очередь и остановка разделены блокировкой: операция, принятая до остановки,
+// гарантированно попадает в последний пакет.
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer {
+    // Пробуждает поток записи при остановке; в базу не записывается
+    private static final LikeOperation STOP = new LikeOperation(0, 0, false, Instant.EPOCH);
+
+    private final FilmDao filmDao;
+    private final BlockingQueue<LikeOperation> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread flusher = new Thread(this::runFlushLoop, "like-write-behind");
+    // Постановка в очередь - под блокировкой чтения, остановка - под блокировкой записи
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+
+    private volatile boolean running = true;
+    private volatile Consumer<AppliedLikes> flushListener = applied -> {
+    };
+
+    public LikeWriteBuffer(FilmDao filmDao,
+                           @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs) {
+        this.filmDao = filmDao;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+        log.info("Включена отложенная запись лайков: batchSize={}, flushInterval={} мс", batchSize,
+                TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+    }
+
+    // Слушатель получает актуальные значения likes_count фильмов, затронутых записанным пакетом,
+    // и операции, которые действительно добавили или сняли лайк
+    public void setFlushListener(Consumer<AppliedLikes> flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    public void addLike(long filmId, long userId, Instant likedAt) {
+        enqueue(new LikeOperation(filmId, userId, true, likedAt));
+    }
+
+    public void removeLike(long filmId, long userId, Instant removedAt) {
+        enqueue(new LikeOperation(filmId, userId, false, removedAt));
+    }
+
+    // Остановка с записью всех накопленных операций. Ждёт завершения уже начатых постановок в очередь
+    // (в том числе заблокированных переполнением - поток записи продолжает освобождать место)
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        // Если очередь полна, поток записи не ждёт в poll и сам увидит остановку
+        queue.offer(STOP);
+        flusher.join();
+    }
+
+    private void enqueue(LikeOperation operation) {
+        stopLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Отложенная запись лайков остановлена.");
+            }
+            queue.put(operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Прервано ожидание места в очереди лайков", e);
+        } finally {
+            stopLock.readLock().unlock();
+        }
+    }
+
+    private void runFlushLoop() {
+        // Последняя операция по паре (фильм, пользователь) отменяет предыдущие
+        Map<List<Long>, LikeOperation> pending = new LinkedHashMap<>();
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+
+        while (running) {
+            try {
+                LikeOperation operation = queue.poll(Math.max(0, nextFlush - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (operation != null) {
+                    merge(pending, operation);
+                    drain(pending, batchSize - pending.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (pending.size() >= batchSize || System.nanoTime() >= nextFlush) {
+                flush(pending);
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+
+        // Остаток очереди записывается теми же пакетами не больше batchSize
+        do {
+            drain(pending, batchSize - pending.size());
+            flush(pending);
+        } while (!queue.isEmpty());
+        log.info("Отложенная запись лайков остановлена, очередь записана");
+    }
+
+    private void drain(Map<List<Long>, LikeOperation> pending, int maxOperations) {
+        if (maxOperations <= 0) {
+            return;
+        }
+        List<LikeOperation> operations = new ArrayList<>();
+        queue.drainTo(operations, maxOperations);
+        operations.forEach(operation -> merge(pending, operation));
+    }
+
+    private void merge(Map<List<Long>, LikeOperation> pending, LikeOperation operation) {
+        if (operation == STOP) {
+            return;
+        }
+        pending.put(List.of(operation.filmId(), operation.userId()), operation);
+    }
+
+    private void flush(Map<List<Long>, LikeOperation> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<LikeOperation> operations = new ArrayList<>(pending.values());
+        pending.clear();
+        try {
+            flushListener.accept(filmDao.applyLikeOperations(operations));
+            log.debug("Записан пакет лайков: {} операций", operations.size());
+        } catch (RuntimeException e) {
+            // Пакет откатился целиком (например, из-за несуществующего фильма) - записываем операции по одной
+            log.warn("Не удалось записать пакет из {} операций с лайками, повтор по одной", operations.size(), e);
+            for (LikeOperation operation : operations) {
+                try {
+                    flushListener.accept(filmDao.applyLikeOperations(List.of(operation)));
+                } catch (RuntimeException ex) {
+                    log.error("Операция с лайком отброшена: {}", operation, ex);
+                }
+            }
+        }
+    }
+}
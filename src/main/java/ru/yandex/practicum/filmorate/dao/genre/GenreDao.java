@@ -37,9 +37,6 @@ public class GenreDao {
 
     // Метод для маппинга строки ResultSet в объект Genre
     private Genre mapRowToGenre(ResultSet rs, int rowNum) throws SQLException {
-        Genre genre = new Genre();
-        genre.setId(rs.getLong("id"));
-        genre.setName(rs.getString("name"));
-        return genre;
+        return new Genre(rs.getLong("id"), rs.getString("name"));
     }
 }
\ No newline at end of file
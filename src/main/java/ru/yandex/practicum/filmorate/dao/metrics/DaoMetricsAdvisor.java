@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.dao.metrics;
+
+import org.springframework.aop.support.StaticMethodMatcherPointcutAdvisor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+// Применяет DaoMetricsInterceptor к публичным методам классов @Repository из пакета dao.
+// Советник внешний по отношению к транзакции, поэтому время вызова включает фиксацию.
+public class DaoMetricsAdvisor extends StaticMethodMatcherPointcutAdvisor {
+    private static final String DAO_PACKAGE = "ru.yandex.practicum.filmorate.dao";
+
+    public DaoMetricsAdvisor(DaoMetricsInterceptor interceptor) {
+        super(interceptor);
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+    }
+
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        return targetClass.getPackageName().startsWith(DAO_PACKAGE)
+                && AnnotatedElementUtils.hasAnnotation(targetClass, Repository.class)
+                && Modifier.isPublic(method.getModifiers())
+                && method.getDeclaringClass() != Object.class;
+    }
+}
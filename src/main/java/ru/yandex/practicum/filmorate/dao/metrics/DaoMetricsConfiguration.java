@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.dao.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+// Советник регистрируется как инфраструктурный: его подхватывает тот же механизм автопрокси,
+// что и @Transactional, и метрики добавляются в уже существующие прокси DAO
+@Configuration(proxyBeanMethods = false)
+public class DaoMetricsConfiguration {
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static DaoMetricsAdvisor daoMetricsAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new DaoMetricsAdvisor(new DaoMetricsInterceptor(meterRegistry));
+    }
+}
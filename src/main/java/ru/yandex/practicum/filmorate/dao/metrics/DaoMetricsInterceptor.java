@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.dao.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Метрики вызовов методов DAO; каждый метод - один или несколько запросов через JdbcTemplate.
+// - filmorate.dao.calls: таймер с гистограммой, теги dao, method, outcome (success/error), exception;
+// - filmorate.dao.rows: число строк результата - размер коллекции или карты, 0/1 для Optional,
+//   число изменённых строк для int и int[]; для остальных типов результата не записывается.
+// Время потоковых методов (forEach*) включает обработку строк потребителем.
+public class DaoMetricsInterceptor implements MethodInterceptor {
+    private static final String CALLS = "filmorate.dao.calls";
+    private static final String ROWS = "filmorate.dao.rows";
+
+    // Реестр метрик создаётся позже советника, поэтому запрашивается при первом вызове
+    private final ObjectProvider<MeterRegistry> registryProvider;
+    private volatile MeterRegistry registry;
+    private final ConcurrentHashMap<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public DaoMetricsInterceptor(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        MeterRegistry registry = registry();
+        if (registry == null) {
+            return invocation.proceed();
+        }
+        Method method = invocation.getMethod();
+        String dao = invocation.getThis() != null
+                ? AopUtils.getTargetClass(invocation.getThis()).getSimpleName()
+                : method.getDeclaringClass().getSimpleName();
+        MethodMeters methodMeters = meters.computeIfAbsent(method, key -> new MethodMeters(registry, dao,
+                method.getName()));
+
+        long started = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            Timer.builder(CALLS)
+                    .tags("dao", dao, "method", method.getName(), "outcome", "error",
+                            "exception", e.getClass().getSimpleName())
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        methodMeters.success.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        long rows = rowCount(result);
+        if (rows >= 0) {
+            methodMeters.rows.record(rows);
+        }
+        return result;
+    }
+
+    private MeterRegistry registry() {
+        MeterRegistry current = registry;
+        if (current == null) {
+            current = registryProvider.getIfAvailable();
+            registry = current;
+        }
+        return current;
+    }
+
+    // Число строк результата или -1, если его нельзя определить по типу
+    private static long rowCount(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Integer count) {
+            return count;
+        }
+        if (result instanceof int[] counts) {
+            long total = 0;
+            for (int count : counts) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private static class MethodMeters {
+        private final Timer success;
+        private final DistributionSummary rows;
+
+        private MethodMeters(MeterRegistry registry, String dao, String method) {
+            success = Timer.builder(CALLS)
+                    .tags("dao", dao, "method", method, "outcome", "success", "exception", "none")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            rows = DistributionSummary.builder(ROWS)
+                    .tags("dao", dao, "method", method)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
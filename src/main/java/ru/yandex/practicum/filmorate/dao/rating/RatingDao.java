@@ -37,9 +37,6 @@ public class RatingDao {
 
     // Метод для маппинга строки ResultSet в объект Rating
     private Rating mapRowToRating(ResultSet rs, int rowNum) throws SQLException {
-        Rating rating = new Rating();
-        rating.setId(rs.getLong("id"));
-        rating.setName(rs.getString("name"));
-        return rating;
+        return new Rating(rs.getLong("id"), rs.getString("name"));
     }
 }
\ No newline at end of file
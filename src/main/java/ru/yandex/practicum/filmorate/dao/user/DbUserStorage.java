@@ -1,23 +1,53 @@
 package ru.yandex.practicum.filmorate.dao.user;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.StripedLocks;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 @Component("dbUserStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "db", matchIfMissing = true)
 public class DbUserStorage implements UserStorage {
 
     private final UserDao userDao;
+    // Граф дружбы в памяти; null, если выключен (filmorate.friends.graph.enabled)
+    private final FriendGraph friendGraph;
+    // Запись в БД и правка графа для одной пары выполняются под общей блокировкой, иначе встречные
+    // add/remove могут применить изменения к графу в другом порядке, чем к таблице
+    private final StripedLocks locks = new StripedLocks(256);
 
     @Autowired
-    public DbUserStorage(UserDao userDao) {
+    public DbUserStorage(UserDao userDao,
+                         @Value("${filmorate.friends.graph.enabled:false}") boolean friendGraphEnabled,
+                         @Value("${filmorate.friends.graph.compaction-threshold:10000}") int compactionThreshold) {
         this.userDao = userDao;
+        this.friendGraph = friendGraphEnabled ? new FriendGraph(compactionThreshold) : null;
+    }
+
+    // Построение графа дружбы при старте приложения
+    @PostConstruct
+    public void rebuildFriendGraph() {
+        if (friendGraph == null) {
+            return;
+        }
+        FriendGraph.Builder builder = new FriendGraph.Builder();
+        userDao.forEachFriendship(builder::add);
+        friendGraph.load(builder);
     }
 
     @Override
@@ -35,53 +65,116 @@ public class DbUserStorage implements UserStorage {
         return userDao.getUserById(id); // уже кидает UserNotFoundException
     }
 
+    @Override
+    public List<User> getUsersByIds(long[] ids) {
+        Map<Long, User> usersById = new HashMap<>();
+        userDao.getUsersByIds(ids).forEach(user -> usersById.put(user.getId(), user));
+        return Arrays.stream(ids)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<User> getAllUsers() {
         return userDao.getAllUsers();
     }
 
+    @Override
+    public void forEachUser(Consumer<User> consumer) {
+        userDao.forEachUser(consumer);
+    }
+
+    @Override
+    public List<User> getUsersPage(Long afterId, int limit) {
+        return userDao.getUsersPage(afterId, limit);
+    }
+
     @Override
     public void deleteUser(Long userId) {
-        userDao.deleteUser(userId); // внутри уже проверка на существование
+        if (friendGraph == null) {
+            userDao.deleteUser(userId); // внутри уже проверка на существование
+            return;
+        }
+        long[] followerIds = userDao.getFollowerIds(userId);
+        userDao.deleteUser(userId);
+        friendGraph.removeUser(userId, followerIds);
     }
 
     @Override
     public void addFriend(Long userId, Long friendId) {
-        userDao.addFriend(userId, friendId); // внутренняя валидация есть
+        if (friendGraph == null) {
+            userDao.addFriend(userId, friendId); // внутренняя валидация есть
+            return;
+        }
+        locks.run(userId, friendId, () -> {
+            userDao.addFriend(userId, friendId);
+            friendGraph.addFriend(userId, friendId);
+        });
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
-        userDao.removeFriend(userId, friendId); // с проверкой на наличие дружбы
+        if (friendGraph == null) {
+            userDao.removeFriend(userId, friendId); // с проверкой на наличие дружбы
+            return;
+        }
+        locks.run(userId, friendId, () -> {
+            userDao.removeFriend(userId, friendId);
+            friendGraph.removeFriend(userId, friendId);
+        });
+    }
+
+    @Override
+    public long[] getFriendIds(Long userId) {
+        long[] friendIds = friendGraph != null ? friendGraph.friendIds(userId) : userDao.getFriendIds(userId);
+        if (friendIds.length == 0) {
+            requireUser(userId);
+        }
+        return friendIds;
+    }
+
+    @Override
+    public long[] getFollowerIds(Long userId) {
+        return userDao.getFollowerIds(userId);
+    }
+
+    @Override
+    public void forEachFriendId(long[] userIds, LongConsumer consumer) {
+        if (friendGraph == null) {
+            userDao.forEachFriendId(userIds, consumer);
+            return;
+        }
+        for (long userId : userIds) {
+            friendGraph.forEachFriend(userId, consumer);
+        }
     }
 
     @Override
     public List<User> getFriends(Long userId) {
-        if (!userDao.userExists(userId)) {
-            throw new UserNotFoundException("Пользователь с ID " + userId + " не существует.");
+        if (friendGraph == null) {
+            requireUser(userId);
+            return userDao.getFriends(userId);
         }
-        return userDao.getFriends(userId);
+        return userDao.getUsersByIds(getFriendIds(userId));
     }
 
     @Override
     public List<User> getCommonFriends(Long userId, Long otherUserId) {
-        if (!userDao.userExists(userId)) {
-            throw new UserNotFoundException("Пользователь с ID " + userId + " не существует.");
+        if (friendGraph == null) {
+            return userDao.getCommonFriends(userId, otherUserId); // пользователи проверяются внутри
         }
-        if (!userDao.userExists(otherUserId)) {
-            throw new UserNotFoundException("Пользователь с ID " + otherUserId + " не существует.");
+        long[] commonFriendIds = friendGraph.commonFriendIds(userId, otherUserId);
+        if (commonFriendIds.length == 0) {
+            requireUser(userId);
+            requireUser(otherUserId);
         }
+        return userDao.getUsersByIds(commonFriendIds);
+    }
 
-        Set<Long> userFriends = userDao.getFriends(userId).stream()
-                .map(User::getId)
-                .collect(Collectors.toSet());
-        Set<Long> otherUserFriends = userDao.getFriends(otherUserId).stream()
-                .map(User::getId)
-                .collect(Collectors.toSet());
-
-        return userFriends.stream()
-                .filter(otherUserFriends::contains)
-                .map(userDao::getUserById)
-                .collect(Collectors.toList());
+    private void requireUser(Long userId) {
+        if (!userDao.userExists(userId)) {
+            throw new UserNotFoundException("Пользователь с ID " + userId + " не существует.");
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,8 +4,10 @@ import jakarta.validation.ValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
@@ -15,12 +17,21 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 @Repository
 public class UserDao {
     private static final Logger log = LoggerFactory.getLogger(UserDao.class);
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int MAX_IN_LIST_SIZE = 1000;
     private final JdbcTemplate jdbcTemplate;
 
     public UserDao(JdbcTemplate jdbcTemplate) {
@@ -57,13 +68,10 @@ public class UserDao {
     public void updateUser(User user) {
         validateUser(user, true);
 
-        if (!userExists(user.getId())) {
-            throw new UserNotFoundException("Пользователь с ID " + user.getId() + " не найден.");
-        }
-
         String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
+        int updated;
         try {
-            jdbcTemplate.update(sql,
+            updated = jdbcTemplate.update(sql,
                     user.getEmail(),
                     user.getLogin(),
                     user.getName(),
@@ -73,6 +81,9 @@ public class UserDao {
             log.error("Ошибка при обновлении пользователя с ID {}", user.getId(), e);
             throw new RuntimeException("Не удалось обновить пользователя", e);
         }
+        if (updated == 0) {
+            throw new UserNotFoundException("Пользователь с ID " + user.getId() + " не найден.");
+        }
     }
 
     public User getUserById(Long id) {
@@ -97,6 +108,27 @@ public class UserDao {
         }
     }
 
+    // Постраничная выборка по ID (keyset)
+    public List<User> getUsersPage(Long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        try {
+            return jdbcTemplate.query(sql, this::mapRowToUser, afterId != null ? afterId : 0L, limit);
+        } catch (DataAccessException e) {
+            log.error("Ошибка при получении страницы пользователей после ID {}", afterId, e);
+            throw new RuntimeException("Не удалось получить список пользователей", e);
+        }
+    }
+
+    // Потоковый обход всех пользователей курсором порциями по EXPORT_FETCH_SIZE
+    public void forEachUser(Consumer<User> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT * FROM users ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapRowToUser(rs, 0)));
+    }
+
     public void deleteUser(Long userId) {
         if (!userExists(userId)) {
             throw new UserNotFoundException("Пользователь с ID " + userId + " не найден.");
@@ -111,22 +143,18 @@ public class UserDao {
         }
     }
 
+    // Повторное добавление друга ничего не меняет (MERGE по первичному ключу).
+    // Существование пользователей проверяют внешние ключи, запросы-проверки выполняются только при их нарушении.
     public void addFriend(Long userId, Long friendId) {
-        if (!userExists(userId)) {
-            throw new UserNotFoundException("Пользователь с ID " + userId + " не найден.");
-        }
-        if (!userExists(friendId)) {
-            throw new UserNotFoundException("Пользователь с ID " + friendId + " не найден.");
-        }
-        if (friendshipExists(userId, friendId)) {
-            log.warn("Дружба между userId={} и friendId={} уже существует.", userId, friendId);
-            throw new IllegalArgumentException("Дружба между userId=" + userId + " и friendId=" + friendId + " уже существует.");
-        }
-
-        String sql = "INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED')";
+        String sql = "MERGE INTO friendships (user_id, friend_id, status) KEY (user_id, friend_id) " +
+                "VALUES (?, ?, 'CONFIRMED')";
         try {
             jdbcTemplate.update(sql, userId, friendId);
             log.debug("Дружба добавлена: userId={}, friendId={}", userId, friendId);
+        } catch (DataIntegrityViolationException e) {
+            requireUsers(userId, friendId);
+            log.error("Ошибка при добавлении дружбы: userId={}, friendId={}", userId, friendId, e);
+            throw new RuntimeException("Не удалось добавить дружбу", e);
         } catch (DataAccessException e) {
             log.error("Ошибка при добавлении дружбы: userId={}, friendId={}", userId, friendId, e);
             throw new RuntimeException("Не удалось добавить дружбу", e);
@@ -134,26 +162,22 @@ public class UserDao {
     }
 
     public void removeFriend(Long userId, Long friendId) {
-        if (!userExists(userId)) {
-            throw new UserNotFoundException("Пользователь с ID " + userId + " не найден.");
-        }
-        if (!userExists(friendId)) {
-            throw new UserNotFoundException("Пользователь с ID " + friendId + " не найден.");
-        }
-
         String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
+        int result;
         try {
-            int result = jdbcTemplate.update(sql, userId, friendId);
-            if (result == 0) {
-                log.warn("Дружба между userId={} и friendId={} не существует. Запись не удалена.", userId, friendId);
-                // Не выбрасываем исключение, чтобы избежать статуса 404
-            } else {
-                log.debug("Дружба успешно удалена: userId={}, friendId={}", userId, friendId);
-            }
+            result = jdbcTemplate.update(sql, userId, friendId);
         } catch (DataAccessException e) {
             log.error("Ошибка при удалении дружбы: userId={}, friendId={}", userId, friendId, e);
             throw new RuntimeException("Не удалось удалить дружбу", e);
         }
+        if (result == 0) {
+            // Ничего не удалено - проверяем, существуют ли пользователи
+            requireUsers(userId, friendId);
+            log.warn("Дружба между userId={} и friendId={} не существует. Запись не удалена.", userId, friendId);
+            // Не выбрасываем исключение, чтобы избежать статуса 404
+        } else {
+            log.debug("Дружба успешно удалена: userId={}, friendId={}", userId, friendId);
+        }
     }
 
     public List<User> getFriends(Long userId) {
@@ -171,16 +195,94 @@ public class UserDao {
         }
     }
 
+    // Общие друзья двух пользователей одним запросом: пересечение списков друзей считается соединением
+    // friendships с самой собой. Существование пользователей проверяется только при пустом результате.
+    public List<User> getCommonFriends(Long userId, Long otherUserId) {
+        String sql = """
+                    SELECT u.*
+                    FROM friendships f1
+                    JOIN friendships f2 ON f2.friend_id = f1.friend_id
+                    JOIN users u ON u.id = f1.friend_id
+                    WHERE f1.user_id = ? AND f2.user_id = ?
+                        AND f1.status = 'CONFIRMED' AND f2.status = 'CONFIRMED'
+                    ORDER BY u.id
+               \s""";
+        List<User> commonFriends;
+        try {
+            commonFriends = jdbcTemplate.query(sql, this::mapRowToUser, userId, otherUserId);
+        } catch (DataAccessException e) {
+            log.error("Ошибка при получении общих друзей userId={} и otherUserId={}", userId, otherUserId, e);
+            throw new RuntimeException("Не удалось получить список общих друзей", e);
+        }
+        if (commonFriends.isEmpty()) {
+            requireUsers(userId, otherUserId);
+        }
+        return commonFriends;
+    }
+
+    // Пользователи по списку ID в порядке возрастания ID; длинные списки запрашиваются порциями
+    public List<User> getUsersByIds(long[] ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += MAX_IN_LIST_SIZE) {
+            Object[] args = Arrays.stream(ids, from, Math.min(ids.length, from + MAX_IN_LIST_SIZE))
+                    .boxed()
+                    .toArray();
+            String sql = "SELECT * FROM users WHERE id IN (" + String.join(", ", Collections.nCopies(args.length, "?"))
+                    + ")";
+            users.addAll(jdbcTemplate.query(sql, this::mapRowToUser, args));
+        }
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    // Обход ID друзей всех переданных пользователей; длинные списки запрашиваются порциями
+    public void forEachFriendId(long[] userIds, LongConsumer consumer) {
+        for (int from = 0; from < userIds.length; from += MAX_IN_LIST_SIZE) {
+            Object[] args = Arrays.stream(userIds, from, Math.min(userIds.length, from + MAX_IN_LIST_SIZE))
+                    .boxed()
+                    .toArray();
+            String sql = "SELECT friend_id FROM friendships WHERE status = 'CONFIRMED' AND user_id IN ("
+                    + String.join(", ", Collections.nCopies(args.length, "?")) + ")";
+            jdbcTemplate.query(sql, (RowCallbackHandler) rs -> consumer.accept(rs.getLong("friend_id")), args);
+        }
+    }
+
+    // ID друзей пользователя по возрастанию
+    public long[] getFriendIds(Long userId) {
+        String sql = "SELECT friend_id FROM friendships WHERE user_id = ? AND status = 'CONFIRMED' ORDER BY friend_id";
+        return jdbcTemplate.queryForList(sql, Long.class, userId).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // ID пользователей, у которых userId в друзьях
+    public long[] getFollowerIds(Long userId) {
+        String sql = "SELECT user_id FROM friendships WHERE friend_id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, userId).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Обход всех подтверждённых дружб в порядке (user_id, friend_id) для построения графа дружбы
+    public void forEachFriendship(BiConsumer<Long, Long> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT user_id, friend_id FROM friendships WHERE status = 'CONFIRMED' ORDER BY user_id, friend_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getLong("user_id"), rs.getLong("friend_id")));
+    }
+
     boolean userExists(Long id) {
         String sql = "SELECT COUNT(*) FROM users WHERE id = ?";
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
         return count != null && count > 0;
     }
 
-    private boolean friendshipExists(Long userId, Long friendId) {
-        String sql = "SELECT COUNT(*) FROM friendships WHERE user_id = ? AND friend_id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, userId, friendId);
-        return count != null && count > 0;
+    private void requireUsers(Long userId, Long friendId) {
+        if (!userExists(userId)) {
+            throw new UserNotFoundException("Пользователь с ID " + userId + " не найден.");
+        }
+        if (!userExists(friendId)) {
+            throw new UserNotFoundException("Пользователь с ID " + friendId + " не найден.");
+        }
     }
 
     private void validateUser(User user, boolean isUpdate) {
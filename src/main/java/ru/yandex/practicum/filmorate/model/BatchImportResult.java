@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BatchImportResult {
+    // Больше ошибок в ответ не попадает, но счётчик failed учитывает все
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private int imported;
+    private int failed;
+    private List<ItemError> errors = new ArrayList<>();
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(int index, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new ItemError(index, message));
+        }
+    }
+
+    // Ошибка одного элемента; index - порядковый номер элемента во входных данных, начиная с 0
+    @Data
+    @AllArgsConstructor
+    public static class ItemError {
+        private int index;
+        private String message;
+    }
+}
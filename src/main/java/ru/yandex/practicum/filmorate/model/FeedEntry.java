@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class FeedEntry {
+    private Film film;
+    private Long userId; // Друг, поставивший лайк
+    private Instant likedAt;
+}
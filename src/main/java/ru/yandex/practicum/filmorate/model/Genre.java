@@ -1,9 +1,18 @@
 package ru.yandex.practicum.filmorate.model;
 
-import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Value;
 
-@Data
+// Неизменяемый: экземпляры из справочника жанров разделяются между всеми фильмами
+@Value
 public class Genre {
-    private Long id;
-    private String name;
-}
\ No newline at end of file
+    Long id;
+    String name;
+
+    @JsonCreator
+    public Genre(@JsonProperty("id") Long id, @JsonProperty("name") String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class MultiGetResult<T> {
+    private List<T> items; // Найденные объекты в порядке запрошенных ID
+    private List<Long> missingIds; // Запрошенные ID, для которых объекты не найдены
+}
@@ -1,9 +1,18 @@
 package ru.yandex.practicum.filmorate.model;
 
-import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Value;
 
-@Data
+// Неизменяемый: экземпляры из справочника рейтингов разделяются между всеми фильмами
+@Value
 public class Rating {
-    private Long id; // Уникальный идентификатор
-    private String name; // Название рейтинга (например, "G", "PG")
-}
\ No newline at end of file
+    Long id; // Уникальный идентификатор
+    String name; // Название рейтинга (например, "G", "PG")
+
+    @JsonCreator
+    public Rating(@JsonProperty("id") Long id, @JsonProperty("name") String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FeedEntry;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.RecentLikeIndex;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Лента пользователя: фильмы, недавно понравившиеся его друзьям, от новых лайков к старым.
+// Лайки берутся из буферов последних лайков хранилища фильмов, а не из таблицы likes,
+// поэтому время ответа не зависит от числа лайков друзей.
+@Service
+public class FeedService {
+    private static final int MAX_FEED_SIZE = 100;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @Autowired
+    public FeedService(FilmStorage filmStorage, UserStorage userStorage) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+
+    public List<FeedEntry> getFeed(Long userId, int count) {
+        if (count <= 0 || count > MAX_FEED_SIZE) {
+            throw new ValidationException("Размер ленты должен быть от 1 до " + MAX_FEED_SIZE + ".");
+        }
+        userStorage.getUserById(userId); // несуществующий пользователь - 404
+        List<RecentLikeIndex.RecentLike> likes = filmStorage.getRecentLikes(userStorage.getFriendIds(userId), count);
+        List<Long> filmIds = likes.stream()
+                .map(RecentLikeIndex.RecentLike::filmId)
+                .toList();
+        Map<Long, Film> films = filmStorage.getFilmsByIds(filmIds).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+
+        List<FeedEntry> feed = new ArrayList<>(likes.size());
+        for (RecentLikeIndex.RecentLike like : likes) {
+            Film film = films.get(like.filmId());
+            if (film != null) { // фильм удалён после выборки лайков
+                feed.add(new FeedEntry(film, like.userId(), like.likedAt()));
+            }
+        }
+        return feed;
+    }
+}
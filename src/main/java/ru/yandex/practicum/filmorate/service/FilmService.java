@@ -1,42 +1,141 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchImportResult;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MultiGetResult;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.validation.OnCreate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class FilmService {
+    // Окно трендов: число и единица измерения (m - минуты, h - часы, d - дни)
+    private static final Pattern WINDOW_PATTERN = Pattern.compile("(\\d{1,6})([mhd])");
 
     private final FilmStorage filmStorage;
+    private final ReferenceDictionary referenceDictionary;
+    private final Validator validator;
+    private final SimilarFilmsService similarFilmsService;
+    private final int importChunkSize;
 
     @Autowired
-    public FilmService(@Qualifier("dbFilmStorage") FilmStorage filmStorage) {
+    public FilmService(FilmStorage filmStorage, ReferenceDictionary referenceDictionary,
+                       Validator validator, SimilarFilmsService similarFilmsService,
+                       @Value("${filmorate.films.import.chunk-size:1000}") int importChunkSize) {
         this.filmStorage = filmStorage;
+        this.referenceDictionary = referenceDictionary;
+        this.validator = validator;
+        this.similarFilmsService = similarFilmsService;
+        this.importChunkSize = importChunkSize;
     }
 
     public List<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    public CursorPage<Film> getFilmsPage(Long afterId, int limit) {
+        Pagination.validatePageLimit(limit);
+        return Pagination.page(filmStorage.getFilmsPage(afterId, limit), limit, Film::getId);
+    }
+
+    public void exportFilms(Consumer<Film> consumer) {
+        filmStorage.forEachFilm(consumer);
+    }
+
     public Film addFilm(Film film) {
         Long generatedId = filmStorage.createFilm(film);
         film.setId(generatedId);
+        similarFilmsService.onFilmSaved(film);
         return film;
     }
 
+    // Массовый импорт: элементы читаются по одному, проверяются без обращений к базе данных
+    // и сохраняются порциями по importChunkSize, каждая порция - в своей транзакции.
+    // Ошибки отдельных элементов попадают в результат и не прерывают импорт остальных.
+    public BatchImportResult importFilms(Iterator<Film> films) {
+        BatchImportResult result = new BatchImportResult();
+        List<Film> chunk = new ArrayList<>(importChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(importChunkSize);
+        int index = 0;
+        while (true) {
+            Film film;
+            try {
+                if (!films.hasNext()) {
+                    break;
+                }
+                film = films.next();
+            } catch (RuntimeException e) {
+                // Входные данные не разбираются - продолжать чтение потока нельзя
+                result.addError(index, "Некорректные данные: " + e.getMessage());
+                break;
+            }
+            String error = validateForImport(film);
+            if (error != null) {
+                result.addError(index, error);
+            } else {
+                chunk.add(film);
+                chunkIndexes.add(index);
+                if (chunk.size() >= importChunkSize) {
+                    importChunk(chunk, chunkIndexes, result);
+                }
+            }
+            index++;
+        }
+        importChunk(chunk, chunkIndexes, result);
+        log.info("Импорт фильмов завершён: загружено={}, с ошибками={}", result.getImported(), result.getFailed());
+        return result;
+    }
+
     public Film updateFilm(Film film) {
         filmStorage.updateFilm(film);
-        return filmStorage.getFilmById(film.getId());
+        Film updated = filmStorage.getFilmById(film.getId());
+        similarFilmsService.onFilmSaved(updated);
+        return updated;
     }
 
     public Film getFilmById(Long id) {
         return filmStorage.getFilmById(id);
     }
 
+    // Несколько фильмов за один запрос; ненайденные ID возвращаются отдельным списком
+    public MultiGetResult<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > Pagination.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество ID должно быть от 1 до " + Pagination.MAX_PAGE_SIZE + ".");
+        }
+        if (ids.contains(null)) {
+            throw new ValidationException("Список ID не должен содержать пустых значений.");
+        }
+        List<Film> films = filmStorage.getFilmsByIds(ids);
+        Set<Long> found = new HashSet<>();
+        films.forEach(film -> found.add(film.getId()));
+        List<Long> missingIds = ids.stream()
+                .filter(id -> !found.contains(id))
+                .distinct()
+                .toList();
+        return new MultiGetResult<>(films, missingIds);
+    }
+
     public void addLike(Long filmId, Long userId) {
         filmStorage.addLike(filmId, userId);
     }
@@ -45,10 +144,95 @@ public class FilmService {
         filmStorage.removeLike(filmId, userId);
     }
 
+    public List<Film> getSimilarFilms(Long filmId, int count) {
+        return similarFilmsService.getSimilarFilms(filmId, count);
+    }
+
     public List<Film> getMostPopularFilms(int count) {
         if (count <= 0) {
             throw new IllegalArgumentException("Количество популярных фильмов должно быть больше 0.");
         }
         return filmStorage.getMostPopularFilms(count);
     }
-}
\ No newline at end of file
+
+    public List<Film> getTrendingFilms(String window, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество фильмов в трендах должно быть больше 0.");
+        }
+        Duration duration = parseWindow(window);
+        Duration maxWindow = filmStorage.getMaxTrendingWindow();
+        if (duration.compareTo(maxWindow) > 0) {
+            // Индекс не хранит лайки старше maxWindow - более длинное окно молча дало бы тот же ответ
+            throw new ValidationException("Окно трендов " + window + " больше максимального: "
+                    + maxWindow.toMinutes() + "m.");
+        }
+        return filmStorage.getTrendingFilms(duration, count);
+    }
+
+    private void importChunk(List<Film> chunk, List<Integer> chunkIndexes, BatchImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> filmIds = filmStorage.createFilms(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).setId(filmIds.get(i));
+                similarFilmsService.onFilmSaved(chunk.get(i));
+            }
+            result.addImported(chunk.size());
+        } catch (RuntimeException e) {
+            // Порция откатилась целиком - сохраняем её по одному фильму, чтобы найти ошибочные
+            log.warn("Не удалось сохранить порцию из {} фильмов, повтор по одному", chunk.size(), e);
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    Film film = chunk.get(i);
+                    film.setId(filmStorage.createFilm(film));
+                    similarFilmsService.onFilmSaved(film);
+                    result.addImported(1);
+                } catch (RuntimeException itemError) {
+                    result.addError(chunkIndexes.get(i), itemError.getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    // Текст ошибки проверки фильма перед импортом или null, если фильм корректен
+    private String validateForImport(Film film) {
+        if (film == null) {
+            return "Пустой элемент";
+        }
+        Set<ConstraintViolation<Film>> violations = validator.validate(film, OnCreate.class);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (film.getMpa() != null && !referenceDictionary.ratingExists(film.getMpa().getId())) {
+            return "Рейтинг с ID " + film.getMpa().getId() + " не существует.";
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (genre == null || !referenceDictionary.genreExists(genre.getId())) {
+                    return "Жанр с ID " + (genre != null ? genre.getId() : null) + " не существует.";
+                }
+            }
+        }
+        return null;
+    }
+
+    private Duration parseWindow(String window) {
+        Matcher matcher = WINDOW_PATTERN.matcher(window);
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            throw new ValidationException("Некорректное окно трендов: " + window + ". Ожидается, например, 90m, 24h или 7d.");
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            default -> Duration.ofDays(amount);
+        };
+    }
+}
@@ -1,7 +1,7 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dao.genre.GenreDao;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.util.List;
@@ -9,20 +9,23 @@ import java.util.List;
 @Service
 public class GenreService {
 
-    private final GenreDao genreDao;
+    private final ReferenceDictionary referenceDictionary;
 
-    public GenreService(GenreDao genreDao) {
-        this.genreDao = genreDao;
+    public GenreService(ReferenceDictionary referenceDictionary) {
+        this.referenceDictionary = referenceDictionary;
     }
 
     // Получение всех жанров
     public List<Genre> getAllGenres() {
-        return genreDao.getAllGenres();
+        return referenceDictionary.getAllGenres();
     }
 
     // Получение жанра по ID
     public Genre getGenreById(Long id) {
-        return genreDao.getGenreById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Жанр с ID " + id + " не найден"));
+        Genre genre = referenceDictionary.getGenre(id);
+        if (genre == null) {
+            throw new IllegalArgumentException("Жанр с ID " + id + " не найден");
+        }
+        return genre;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Общие правила постраничной выдачи по курсору (keyset) для фильмов и пользователей
+final class Pagination {
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private Pagination() {
+    }
+
+    static void validatePageLimit(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + ".");
+        }
+    }
+
+    // Страница из выборки не больше limit элементов: у полной страницы курсор - ID последнего элемента,
+    // у неполной курсора нет
+    static <T> CursorPage<T> page(List<T> items, int limit, Function<T, Long> idOf) {
+        Long nextCursor = items.size() == limit ? idOf.apply(items.get(items.size() - 1)) : null;
+        return new CursorPage<>(items, nextCursor);
+    }
+}
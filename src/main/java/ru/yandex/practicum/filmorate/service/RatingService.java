@@ -1,7 +1,7 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dao.rating.RatingDao;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
 import ru.yandex.practicum.filmorate.model.Rating;
 
 import java.util.List;
@@ -9,20 +9,23 @@ import java.util.List;
 @Service
 public class RatingService {
 
-    private final RatingDao ratingDao;
+    private final ReferenceDictionary referenceDictionary;
 
-    public RatingService(RatingDao ratingDao) {
-        this.ratingDao = ratingDao;
+    public RatingService(ReferenceDictionary referenceDictionary) {
+        this.referenceDictionary = referenceDictionary;
     }
 
     // Получение всех рейтингов
     public List<Rating> getAllRatings() {
-        return ratingDao.getAllRatings();
+        return referenceDictionary.getAllRatings();
     }
 
     // Получение рейтинга по ID
     public Rating getRatingById(Long id) {
-        return ratingDao.getRatingById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Рейтинг с ID " + id + " не найден"));
+        Rating rating = referenceDictionary.getRating(id);
+        if (rating == null) {
+            throw new IllegalArgumentException("Рейтинг с ID " + id + " не найден");
+        }
+        return rating;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.CoOccurrenceIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Рекомендации фильмов по совместным лайкам. Индекс строится из всех лайков при старте и узнаёт об изменениях
+// из общего хранилища лайков, а списки соседей изменённых фильмов пересчитываются по расписанию в собственном
+// пуле потоков, поэтому новый лайк влияет на рекомендации с задержкой до refresh-ms.
+@Slf4j
+@Service
+public class RecommendationService {
+    private static final int MAX_RECOMMENDATIONS = 100;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final ForkJoinPool refreshPool;
+    private final CoOccurrenceIndex index;
+
+    @Autowired
+    public RecommendationService(FilmStorage filmStorage, UserStorage userStorage, LikeStore likeStore,
+                                 @Value("${filmorate.recommendations.neighbours:50}") int neighbourCount,
+                                 @Value("${filmorate.recommendations.max-user-likes:1000}") int maxUserLikes,
+                                 @Value("${filmorate.recommendations.refresh-threads:2}") int refreshThreads) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        // Пересчёт не занимает общий пул, которым пользуются параллельные стримы приложения
+        this.refreshPool = new ForkJoinPool(refreshThreads);
+        this.index = new CoOccurrenceIndex(likeStore, neighbourCount, maxUserLikes, refreshPool);
+        likeStore.addListener(index);
+    }
+
+    // Построение индекса из всех лайков (при старте приложения)
+    @PostConstruct
+    public void rebuildIndex() {
+        long started = System.nanoTime();
+        index.clear();
+        index.rebuild();
+        log.info("Индекс рекомендаций построен за {} мс", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-ms:5000}")
+    public void refreshIndex() {
+        int refreshed = index.refresh();
+        if (refreshed > 0) {
+            log.debug("Пересчитаны соседи {} фильмов", refreshed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshPool.shutdownNow();
+    }
+
+    public List<Film> getRecommendations(Long userId, int count) {
+        if (count <= 0 || count > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS + ".");
+        }
+        userStorage.getUserById(userId); // несуществующий пользователь - 404
+        return filmStorage.getFilmsByIds(index.recommend(userId, count, filmStorage::containsFilm));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+import ru.yandex.practicum.filmorate.storage.film.SimilarityIndex;
+
+import java.util.List;
+import java.util.Objects;
+
+// Похожие фильмы по жанрам и аудитории. Индекс строится из всех фильмов и лайков при старте,
+// изменения жанров и лайков применяются к нему сразу; лайки он читает из общего хранилища лайков.
+@Slf4j
+@Service
+public class SimilarFilmsService {
+    private static final int MAX_SIMILAR = 100;
+
+    private final FilmStorage filmStorage;
+    private final SimilarityIndex index;
+
+    @Autowired
+    public SimilarFilmsService(FilmStorage filmStorage, LikeStore likeStore,
+                               @Value("${filmorate.similar.genre-weight:0.3}") double genreWeight,
+                               @Value("${filmorate.similar.max-candidates:500}") int maxCandidates) {
+        this.filmStorage = filmStorage;
+        this.index = new SimilarityIndex(likeStore, genreWeight, maxCandidates);
+        likeStore.addListener(index);
+    }
+
+    // Построение индекса из всех фильмов и лайков (при старте приложения)
+    @PostConstruct
+    public void rebuildIndex() {
+        long started = System.nanoTime();
+        index.clear();
+        filmStorage.forEachFilm(this::onFilmSaved);
+        index.buildSignatures();
+        log.info("Индекс похожих фильмов построен за {} мс", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Новый или изменённый фильм: пересчитываются его жанры
+    public void onFilmSaved(Film film) {
+        List<Long> genreIds = film.getGenres() == null ? List.of() : film.getGenres().stream()
+                .filter(Objects::nonNull)
+                .map(Genre::getId)
+                .toList();
+        index.setGenres(film.getId(), genreIds);
+    }
+
+    public List<Film> getSimilarFilms(Long filmId, int count) {
+        if (count <= 0 || count > MAX_SIMILAR) {
+            throw new ValidationException("Количество похожих фильмов должно быть от 1 до " + MAX_SIMILAR + ".");
+        }
+        filmStorage.getFilmById(filmId); // несуществующий фильм - 404
+        return filmStorage.getFilmsByIds(index.similar(filmId, count));
+    }
+}
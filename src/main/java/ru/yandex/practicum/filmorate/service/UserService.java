@@ -1,28 +1,61 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.CursorPage;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.LongCountMap;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
+    // Рекомендаций на пользователя считается и кэшируется не больше этого числа
+    private static final int MAX_SUGGESTIONS = 100;
+    private static final int MAX_CACHED_SUGGESTIONS = 10_000;
 
     private final UserStorage userStorage;
+    private final long suggestionsTtlMillis;
+    // Граница обхода: учитываются друзья не больше чем стольких друзей пользователя, выбранных случайно
+    private final int maxExpandedFriends;
+    // Рекомендации друзей по ID пользователя, в порядке убывания числа общих друзей
+    private final ConcurrentHashMap<Long, CachedSuggestions> suggestionsCache = new ConcurrentHashMap<>();
+    // Номер начатого расчёта рекомендаций по ID пользователя. Сброс рекомендаций пользователя удаляет номер,
+    // и результат, посчитанный по данным до изменения дружбы, в кэш уже не кладётся
+    private final ConcurrentHashMap<Long, Long> suggestionLoads = new ConcurrentHashMap<>();
+    private final AtomicLong lastSuggestionLoad = new AtomicLong();
 
     @Autowired
-    public UserService(@Qualifier("dbUserStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage,
+                       @Value("${filmorate.friends.suggestions.cache-ttl-ms:30000}") long suggestionsTtlMillis,
+                       @Value("${filmorate.friends.suggestions.max-expanded-friends:5000}") int maxExpandedFriends) {
         this.userStorage = userStorage;
+        this.suggestionsTtlMillis = suggestionsTtlMillis;
+        this.maxExpandedFriends = maxExpandedFriends;
     }
 
     public Collection<User> getAllUsers() {
         return userStorage.getAllUsers();
     }
 
+    public CursorPage<User> getUsersPage(Long afterId, int limit) {
+        Pagination.validatePageLimit(limit);
+        return Pagination.page(userStorage.getUsersPage(afterId, limit), limit, User::getId);
+    }
+
+    public void exportUsers(Consumer<User> consumer) {
+        userStorage.forEachUser(consumer);
+    }
+
     public User addUser(User user) {
         //времени на чистую архитектуру уже не хватает ужасно
         Long generatedId = userStorage.createUser(user);
@@ -41,10 +74,12 @@ public class UserService {
 
     public void addFriend(Long userId, Long friendId) {
         userStorage.addFriend(userId, friendId);
+        onFriendsChanged(userId);
     }
 
     public void removeFriend(Long userId, Long friendId) {
         userStorage.removeFriend(userId, friendId);
+        onFriendsChanged(userId);
     }
 
     public List<User> getFriends(Long userId) {
@@ -54,4 +89,89 @@ public class UserService {
     public List<User> getCommonFriends(Long userId, Long otherUserId) {
         return userStorage.getCommonFriends(userId, otherUserId);
     }
+
+    // Рекомендации друзей: пользователи, не являющиеся друзьями, по убыванию числа общих друзей
+    public List<User> getFriendSuggestions(Long userId, int count) {
+        if (count <= 0 || count > MAX_SUGGESTIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_SUGGESTIONS + ".");
+        }
+        long now = System.currentTimeMillis();
+        CachedSuggestions cached = suggestionsCache.get(userId);
+        if (cached == null || cached.expiresAt() <= now) {
+            long load = lastSuggestionLoad.incrementAndGet();
+            suggestionLoads.put(userId, load);
+            try {
+                CachedSuggestions computed = new CachedSuggestions(rankSuggestions(userId), now + suggestionsTtlMillis);
+                // Проверка номера и запись в кэш атомарны относительно сброса в invalidateSuggestions
+                suggestionLoads.computeIfPresent(userId, (id, current) -> {
+                    if (current == load) {
+                        if (suggestionsCache.size() >= MAX_CACHED_SUGGESTIONS) {
+                            suggestionsCache.clear();
+                        }
+                        suggestionsCache.put(id, computed);
+                    }
+                    return current;
+                });
+                cached = computed;
+            } finally {
+                suggestionLoads.remove(userId, load);
+            }
+        }
+        long[] userIds = cached.userIds();
+        return userStorage.getUsersByIds(Arrays.copyOf(userIds, Math.min(count, userIds.length)));
+    }
+
+    // Обход на два шага: друзья друзей считаются в примитивной хеш-таблице, лучшие отбираются кучей
+    private long[] rankSuggestions(Long userId) {
+        long id = userId;
+        long[] friendIds = userStorage.getFriendIds(userId);
+        long[] expanded = sampleFriends(friendIds);
+        LongCountMap mutualFriends = new LongCountMap(expanded.length * 16);
+        userStorage.forEachFriendId(expanded, candidateId -> {
+            if (candidateId != id && Arrays.binarySearch(friendIds, candidateId) < 0) {
+                mutualFriends.increment(candidateId);
+            }
+        });
+        return mutualFriends.topKeys(MAX_SUGGESTIONS);
+    }
+
+    // Не больше maxExpandedFriends друзей, выбранных случайно (частичное перемешивание Фишера - Йетса),
+    // чтобы при большом числе друзей не учитывались только друзья с меньшими ID
+    private long[] sampleFriends(long[] friendIds) {
+        if (friendIds.length <= maxExpandedFriends) {
+            return friendIds;
+        }
+        long[] sample = friendIds.clone();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < maxExpandedFriends; i++) {
+            int j = random.nextInt(i, sample.length);
+            long swap = sample[i];
+            sample[i] = sample[j];
+            sample[j] = swap;
+        }
+        return Arrays.copyOf(sample, maxExpandedFriends);
+    }
+
+    // Рекомендации пользователя строятся по его друзьям и друзьям его друзей, поэтому изменение друзей userId
+    // затрагивает его самого и тех, у кого он в друзьях. Добавленного или удалённого друга оно касается,
+    // только если userId у него в друзьях, - тогда он среди followerIds.
+    private void onFriendsChanged(Long userId) {
+        invalidateSuggestions(userId);
+        if (suggestionsCache.isEmpty() && suggestionLoads.isEmpty()) {
+            return;
+        }
+        for (long followerId : userStorage.getFollowerIds(userId)) {
+            invalidateSuggestions(followerId);
+        }
+    }
+
+    private void invalidateSuggestions(long userId) {
+        suggestionLoads.compute(userId, (id, load) -> {
+            suggestionsCache.remove(id);
+            return null;
+        });
+    }
+
+    private record CachedSuggestions(long[] userIds, long expiresAt) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.util.CompressedIntSet;
+import ru.yandex.practicum.filmorate.util.LongCountMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongPredicate;
+
+// Соседи фильмов по совместным лайкам (item-to-item). Сходство фильмов f и g - косинусная мера
+// common(f, g) / sqrt(likes(f) * likes(g)), где common - число пользователей, лайкнувших оба фильма.
+// Лайки читаются из общего LikeStore, об их изменениях индекс узнаёт как слушатель хранилища; списки соседей
+// фильмов, затронутых изменениями, пересчитываются в refresh() параллельно в отдельном ForkJoinPool.
+// Пользователи с числом лайков больше maxUserLikes в совместной встречаемости не учитываются: они дают
+// квадратичное число пар и слабый сигнал.
+public class CoOccurrenceIndex implements LikeStore.Listener {
+    // Размер порции фильмов, которую задача пересчёта обрабатывает без дальнейшего деления
+    private static final int REFRESH_CHUNK = 32;
+    // Во сколько раз больше кандидатов, чем соседей, отбирается по числу общих лайков до расчёта сходства
+    private static final int CANDIDATE_FACTOR = 4;
+
+    private final LikeStore likes;
+    private final int neighbourCount;
+    private final int maxUserLikes;
+    private final ForkJoinPool pool;
+    private final ConcurrentHashMap<Long, Neighbours> neighbours = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public CoOccurrenceIndex(LikeStore likes, int neighbourCount, int maxUserLikes, ForkJoinPool pool) {
+        this.likes = likes;
+        this.neighbourCount = neighbourCount;
+        this.maxUserLikes = maxUserLikes;
+        this.pool = pool;
+    }
+
+    // Пересчёт соседей всех фильмов
+    public void rebuild() {
+        for (long filmId : likes.filmIds()) {
+            dirty.add(filmId);
+        }
+        refresh();
+    }
+
+    public void clear() {
+        neighbours.clear();
+        dirty.clear();
+    }
+
+    @Override
+    public void likeAdded(long filmId, long userId) {
+        markDirty(filmId, userId);
+    }
+
+    @Override
+    public void likeRemoved(long filmId, long userId) {
+        markDirty(filmId, userId);
+    }
+
+    // Фильмы, лайкнутые пользователями удалённого фильма, пересчитываются; до пересчёта удалённый фильм
+    // остаётся в их списках соседей и отсеивается в recommend
+    @Override
+    public void filmRemoved(long filmId, int[] userIds) {
+        neighbours.remove(filmId);
+        for (int userId : userIds) {
+            markUserFilmsDirty(userId);
+        }
+    }
+
+    // Пересчёт соседей фильмов, изменившихся с прошлого вызова; возвращает число пересчитанных фильмов
+    public int refresh() {
+        List<Long> filmIds = new ArrayList<>(dirty);
+        if (filmIds.isEmpty()) {
+            return 0;
+        }
+        filmIds.forEach(dirty::remove);
+        pool.invoke(new RefreshTask(filmIds, 0, filmIds.size()));
+        return filmIds.size();
+    }
+
+    // ID до count фильмов, похожих на понравившиеся пользователю, кроме уже понравившихся и тех,
+    // которых нет в хранилище (filmExists): сумма сходства по всем понравившимся фильмам, при равенстве - меньший ID
+    public List<Long> recommend(long userId, int count, LongPredicate filmExists) {
+        CompressedIntSet liked = likes.filmsOf(userId);
+        Map<Long, Double> scores = new HashMap<>();
+        liked.forEach(filmId -> {
+            Neighbours list = neighbours.get((long) filmId);
+            if (list == null) {
+                return;
+            }
+            for (int i = 0; i < list.filmIds().length; i++) {
+                long candidate = list.filmIds()[i];
+                if (!liked.contains((int) candidate)) {
+                    scores.merge(candidate, (double) list.scores()[i], Double::sum);
+                }
+            }
+        });
+        return scores.entrySet().stream()
+                .filter(entry -> filmExists.test(entry.getKey()))
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // Соседи фильма в порядке убывания сходства
+    public List<Long> neighboursOf(long filmId) {
+        Neighbours list = neighbours.get(filmId);
+        if (list == null) {
+            return List.of();
+        }
+        List<Long> result = new ArrayList<>(list.filmIds().length);
+        for (long neighbour : list.filmIds()) {
+            result.add(neighbour);
+        }
+        return result;
+    }
+
+    // Лайк меняет совместную встречаемость фильма со всеми фильмами пользователя
+    private void markDirty(long filmId, long userId) {
+        dirty.add(filmId);
+        markUserFilmsDirty(userId);
+    }
+
+    private void markUserFilmsDirty(long userId) {
+        if (likes.filmCount(userId) <= maxUserLikes) {
+            likes.forEachFilmOf(userId, otherFilmId -> dirty.add((long) otherFilmId));
+        }
+    }
+
+    private void computeNeighbours(long filmId) {
+        CompressedIntSet users = likes.usersOf(filmId);
+        int filmLikes = users.cardinality();
+        if (filmLikes == 0) {
+            neighbours.remove(filmId);
+            return;
+        }
+        LongCountMap common = new LongCountMap(64);
+        users.forEach(userId -> {
+            if (likes.filmCount(userId) <= maxUserLikes) {
+                likes.forEachFilmOf(userId, otherFilmId -> {
+                    if (otherFilmId != filmId) {
+                        common.increment(otherFilmId);
+                    }
+                });
+            }
+        });
+
+        // Сходство считается только для кандидатов с наибольшим числом общих лайков,
+        // из них через min-кучу отбираются neighbourCount лучших
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(Neighbour.ORDER);
+        for (long otherFilmId : common.topKeys(neighbourCount * CANDIDATE_FACTOR)) {
+            int otherLikes = likes.likeCount(otherFilmId);
+            if (otherLikes == 0) {
+                continue;
+            }
+            double score = common.get(otherFilmId) / Math.sqrt((double) filmLikes * otherLikes);
+            best.add(new Neighbour(otherFilmId, (float) score));
+            if (best.size() > neighbourCount) {
+                best.poll();
+            }
+        }
+        long[] filmIds = new long[best.size()];
+        float[] scores = new float[best.size()];
+        for (int i = best.size() - 1; i >= 0; i--) {
+            Neighbour neighbour = best.poll();
+            filmIds[i] = neighbour.filmId();
+            scores[i] = neighbour.score();
+        }
+        neighbours.put(filmId, new Neighbours(filmIds, scores));
+    }
+
+    private record Neighbours(long[] filmIds, float[] scores) {
+    }
+
+    private record Neighbour(long filmId, float score) {
+        // Худший сосед - в голове кучи: меньшее сходство, при равенстве - больший ID
+        private static final Comparator<Neighbour> ORDER = Comparator.comparingDouble(Neighbour::score)
+                .thenComparing(Comparator.comparingLong(Neighbour::filmId).reversed());
+    }
+
+    private class RefreshTask extends RecursiveAction {
+        private final List<Long> filmIds;
+        private final int from;
+        private final int to;
+
+        private RefreshTask(List<Long> filmIds, int from, int to) {
+            this.filmIds = filmIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= REFRESH_CHUNK) {
+                for (int i = from; i < to; i++) {
+                    computeNeighbours(filmIds.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RefreshTask(filmIds, from, middle), new RefreshTask(filmIds, middle, to));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ограниченный по размеру кэш фильмов по ID с вытеснением давно не запрашивавшихся (LRU).
+// Кэш хранит собственные копии фильмов и отдаёт наружу копии, так что изменение полученного фильма
+// не затрагивает кэш. Загрузка при промахе регистрируется (startLoad): invalidate отменяет начатые
+// загрузки фильма, и прочитанные до изменения данные уже не попадут в кэш.
+public class FilmCache implements MeterBinder {
+    private final int maxSize;
+    private final LinkedHashMap<Long, Film> films;
+    // Номер последней начатой загрузки по ID фильма; запись есть только пока загрузка не завершена
+    private final Map<Long, Long> loads = new HashMap<>();
+    private long lastLoad;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FilmCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.films = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Film> eldest) {
+                if (size() > FilmCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Фильм из кэша или null, если его там нет
+    public Film get(long filmId) {
+        Film film;
+        synchronized (films) {
+            film = films.get(filmId);
+        }
+        (film != null ? hits : misses).increment();
+        return film != null ? copyOf(film) : null;
+    }
+
+    // Фильмы из кэша по списку ID; отсутствующие в кэше ID в результат не попадают
+    public Map<Long, Film> getAll(Collection<Long> filmIds) {
+        Map<Long, Film> result = new HashMap<>();
+        synchronized (films) {
+            for (Long filmId : filmIds) {
+                Film film = films.get(filmId);
+                if (film != null) {
+                    result.put(filmId, copyOf(film));
+                }
+            }
+        }
+        hits.add(result.size());
+        misses.add(filmIds.size() - result.size());
+        return result;
+    }
+
+    // Начало загрузки фильма из базы данных при промахе: результат передаётся в put вместе с номером загрузки,
+    // по окончании (в том числе при ошибке) вызывается finishLoad
+    public long startLoad(long filmId) {
+        synchronized (films) {
+            long load = ++lastLoad;
+            loads.put(filmId, load);
+            return load;
+        }
+    }
+
+    // Фильм попадает в кэш, только если после startLoad его не сбрасывали и не начали новую загрузку
+    public void put(Film film, long load) {
+        synchronized (films) {
+            if (maxSize > 0 && Objects.equals(loads.get(film.getId()), load)) {
+                films.put(film.getId(), copyOf(film));
+            }
+        }
+    }
+
+    public void finishLoad(long filmId, long load) {
+        synchronized (films) {
+            loads.remove(filmId, load);
+        }
+    }
+
+    public void invalidate(long filmId) {
+        synchronized (films) {
+            films.remove(filmId);
+            loads.remove(filmId);
+        }
+    }
+
+    public void clear() {
+        synchronized (films) {
+            films.clear();
+            loads.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (films) {
+            return films.size();
+        }
+    }
+
+    // Жанры и рейтинг неизменяемы и разделяются между копиями, список жанров копируется
+    private static Film copyOf(Film film) {
+        return new Film(film.getMpa(), film.getGenres() != null ? new ArrayList<>(film.getGenres()) : null,
+                film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.film.cache.size", this, FilmCache::size)
+                .description("Число фильмов в кэше")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film.cache.requests", hits, LongAdder::sum)
+                .description("Число запросов к кэшу фильмов")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film.cache.requests", misses, LongAdder::sum)
+                .description("Число запросов к кэшу фильмов")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film.cache.evictions", evictions, LongAdder::sum)
+                .description("Число фильмов, вытесненных из кэша по размеру")
+                .register(registry);
+    }
+}
@@ -2,23 +2,53 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Long createFilm(Film film);
 
+    // Создание набора фильмов за одну операцию (все или ни одного); возвращает ID в порядке списка
+    List<Long> createFilms(List<Film> films);
+
     void updateFilm(Film film);
 
     Film getFilmById(Long id);
 
+    // Фильмы по списку ID в порядке списка; отсутствующие ID пропускаются
+    List<Film> getFilmsByIds(List<Long> ids);
+
+    // Есть ли фильм в хранилище; проверка без обращения к базе данных
+    boolean containsFilm(Long id);
+
     List<Film> getAllFilms();
 
+    // Последовательный обход всех фильмов без загрузки их в память целиком
+    void forEachFilm(Consumer<Film> consumer);
+
+    // Страница фильмов с ID больше afterId (null - с начала), упорядоченная по ID
+    List<Film> getFilmsPage(Long afterId, int limit);
+
     void removeFilm(Long filmId);
 
     void addLike(Long filmId, Long userId);
 
     void removeLike(Long filmId, Long userId);
 
+    // Обход всех лайков: (ID фильма, ID пользователя)
+    void forEachLike(BiConsumer<Long, Long> consumer);
+
+    // До count последних лайков пользователей userIds от новых к старым, по одному на фильм
+    List<RecentLikeIndex.RecentLike> getRecentLikes(long[] userIds, int count);
+
     List<Film> getMostPopularFilms(int count);
+
+    // Фильмы с наибольшим числом лайков за последние window
+    List<Film> getTrendingFilms(Duration window, int count);
+
+    // Самое длинное окно трендов, для которого хранятся счётчики
+    Duration getMaxTrendingWindow();
 }
\ No newline at end of file
@@ -1,31 +1,109 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.journal.EntityCodec;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournalFactory;
+import ru.yandex.practicum.filmorate.util.StripedLocks;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+// Хранилище в памяти; выбирается настройкой filmorate.storage.type=memory.
+// Чтения не блокируются, изменения фильма и его лайков сериализуются по блокировке фильма.
+// С включённым журналом (filmorate.storage.journal.enabled) каждое изменение под той же блокировкой
+// сначала пишется в журнал и только затем применяется в памяти, а ответ возвращается после сохранения
+// записи на диск.
 @Component("inMemoryFilmStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
 public class InMemoryFilmStorage implements FilmStorage {
 
-    private final Map<Long, Film> films = new HashMap<>();
-    private final Map<Long, Set<Long>> likes = new HashMap<>();
-    private long nextId = 1;
+    // Типы записей журнала
+    private static final byte FILM_PUT = 1;
+    private static final byte FILM_REMOVE = 2;
+    private static final byte LIKE_ADD = 3;
+    private static final byte LIKE_REMOVE = 4;
+
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final LikeStore likes;
+    private final StripedLocks locks = new StripedLocks(256);
+    private final PopularityIndex popularityIndex = new PopularityIndex("memory");
+    private final TrendingIndex trendingIndex;
+    private final RecentLikeIndex recentLikes;
+    private final Duration feedMaxAge;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final StorageJournalFactory journalFactory;
+    private final ReferenceDictionary referenceDictionary;
+    private StorageJournal journal; // null, если журнал выключен
+
+    public InMemoryFilmStorage(MeterRegistry meterRegistry, ObjectProvider<StorageJournalFactory> journalFactory,
+                               ReferenceDictionary referenceDictionary, LikeStore likes,
+                               @Value("${filmorate.trending.bucket-minutes:60}") long trendingBucketMinutes,
+                               @Value("${filmorate.trending.buckets:168}") int trendingBuckets,
+                               @Value("${filmorate.trending.refresh-ms:5000}") long trendingRefreshMs,
+                               @Value("${filmorate.feed.likes-per-user:50}") int feedLikesPerUser,
+                               @Value("${filmorate.feed.max-age-days:30}") long feedMaxAgeDays) {
+        this.trendingIndex = new TrendingIndex(Duration.ofMinutes(trendingBucketMinutes), trendingBuckets,
+                Duration.ofMillis(trendingRefreshMs));
+        this.recentLikes = new RecentLikeIndex(feedLikesPerUser);
+        this.feedMaxAge = Duration.ofDays(feedMaxAgeDays);
+        this.journalFactory = journalFactory.getIfAvailable();
+        this.referenceDictionary = referenceDictionary;
+        this.likes = likes;
+        popularityIndex.bindTo(meterRegistry);
+    }
+
+    // Восстановление из снимка и журнала при старте приложения
+    @PostConstruct
+    public void openJournal() {
+        if (journalFactory != null) {
+            journal = journalFactory.open("films", new JournalTarget());
+        }
+    }
 
     @Override
     public Long createFilm(Film film) {
-        film.setId(nextId++);
-        films.put(film.getId(), film);
+        awaitDurable(insertFilm(film));
         return film.getId();
     }
 
     @Override
-    public void updateFilm(Film film) {
-        if (!films.containsKey(film.getId())) {
-            throw new IllegalArgumentException("Фильм с ID " + film.getId() + " не найден.");
+    public List<Long> createFilms(List<Film> films) {
+        // Одно ожидание сохранности на всю пачку
+        long position = 0;
+        List<Long> ids = new ArrayList<>(films.size());
+        for (Film film : films) {
+            position = insertFilm(film);
+            ids.add(film.getId());
         }
-        films.put(film.getId(), film);
+        awaitDurable(position);
+        return ids;
+    }
+
+    @Override
+    public void updateFilm(Film film) {
+        awaitDurable(locks.call(film.getId(), () -> {
+            requireFilm(film.getId());
+            return journal(filmRecord(film), () -> films.put(film.getId(), film));
+        }));
     }
 
     @Override
@@ -37,30 +115,89 @@ public class InMemoryFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean containsFilm(Long id) {
+        return films.containsKey(id);
+    }
+
     @Override
     public List<Film> getAllFilms() {
         return new ArrayList<>(films.values());
     }
 
     @Override
-    public void removeFilm(Long filmId) {
-        if (!films.containsKey(filmId)) {
-            throw new IllegalArgumentException("Фильм с ID " + filmId + " не найден.");
+    public void forEachFilm(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
+    @Override
+    public void forEachLike(BiConsumer<Long, Long> consumer) {
+        for (Long filmId : films.keySet()) {
+            likes.usersOf(filmId).forEach(userId -> consumer.accept(filmId, (long) userId));
         }
-        // Удаляем фильм из основного хранилища
-        films.remove(filmId);
-        // Удаляем все лайки, связанные с этим фильмом
-        likes.remove(filmId);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(Long afterId, int limit) {
+        return films.tailMap(afterId != null ? afterId : 0L, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void removeFilm(Long filmId) {
+        awaitDurable(locks.call(filmId, () -> {
+            requireFilm(filmId);
+            return journal(out -> {
+                out.writeByte(FILM_REMOVE);
+                out.writeLong(filmId);
+            }, () -> deleteFilm(filmId));
+        }));
     }
 
     @Override
     public void addLike(Long filmId, Long userId) {
-        likes.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
+        Instant likedAt = Instant.now();
+        awaitDurable(locks.call(filmId, () -> {
+            // Проверка под блокировкой: лайк не может появиться у фильма, удаляемого параллельно
+            requireFilm(filmId);
+            if (likes.contains(filmId, userId)) {
+                return 0L;
+            }
+            return journal(out -> {
+                out.writeByte(LIKE_ADD);
+                out.writeLong(filmId);
+                out.writeLong(userId);
+                out.writeLong(likedAt.toEpochMilli());
+            }, () -> insertLike(filmId, userId, likedAt));
+        }));
     }
 
     @Override
     public void removeLike(Long filmId, Long userId) {
-        likes.getOrDefault(filmId, Collections.emptySet()).remove(userId);
+        awaitDurable(locks.call(filmId, () -> {
+            if (!likes.contains(filmId, userId)) {
+                return 0L;
+            }
+            return journal(out -> {
+                out.writeByte(LIKE_REMOVE);
+                out.writeLong(filmId);
+                out.writeLong(userId);
+            }, () -> deleteLike(filmId, userId));
+        }));
+    }
+
+    @Override
+    public List<RecentLikeIndex.RecentLike> getRecentLikes(long[] userIds, int count) {
+        return recentLikes.merge(userIds, count, Instant.now().minus(feedMaxAge), films::containsKey);
     }
 
     @Override
@@ -68,14 +205,170 @@ public class InMemoryFilmStorage implements FilmStorage {
         if (count <= 0) {
             throw new IllegalArgumentException("Количество популярных фильмов должно быть больше 0.");
         }
-        // Сортируем фильмы по количеству лайков в порядке убывания
-        return films.values().stream()
-                .sorted((f1, f2) -> {
-                    long likes1 = likes.getOrDefault(f1.getId(), Collections.emptySet()).size();
-                    long likes2 = likes.getOrDefault(f2.getId(), Collections.emptySet()).size();
-                    return Long.compare(likes2, likes1); // Обратный порядок для убывания
-                })
-                .limit(count) // Ограничиваем количество фильмов
+        // Порядок фильмов берём из индекса популярности
+        return popularityIndex.top(count).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Film> getTrendingFilms(Duration window, int count) {
+        return trendingIndex.top(window, count).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Duration getMaxTrendingWindow() {
+        return trendingIndex.maxWindow();
+    }
+
+    private long insertFilm(Film film) {
+        film.setId(nextId.getAndIncrement());
+        return locks.call(film.getId(), () -> journal(filmRecord(film), () -> putFilm(film)));
+    }
+
+    private void requireFilm(long filmId) {
+        if (!films.containsKey(filmId)) {
+            throw new IllegalArgumentException("Фильм с ID " + filmId + " не найден.");
+        }
+    }
+
+    private static StorageJournal.RecordWriter filmRecord(Film film) {
+        return out -> {
+            out.writeByte(FILM_PUT);
+            EntityCodec.writeFilm(out, film);
+        };
+    }
+
+    // Жанры и рейтинг восстановленного фильма - общие экземпляры из справочника, как у фильмов,
+    // прочитанных из базы данных; ID, которых в справочнике нет, остаются с прочитанными названиями
+    private Film withDictionaryReferences(Film film) {
+        if (film.getMpa() != null) {
+            Rating rating = referenceDictionary.getRating(film.getMpa().getId());
+            if (rating != null) {
+                film.setMpa(rating);
+            }
+        }
+        if (film.getGenres() != null) {
+            film.setGenres(film.getGenres().stream()
+                    .map(genre -> Objects.requireNonNullElse(referenceDictionary.getGenre(genre.getId()), genre))
+                    .collect(Collectors.toList()));
+        }
+        return film;
+    }
+
+    private void putFilm(Film film) {
+        films.put(film.getId(), film);
+        popularityIndex.add(film.getId());
+    }
+
+    private boolean deleteFilm(long filmId) {
+        // Удаляем фильм из основного хранилища
+        if (films.remove(filmId) == null) {
+            return false;
+        }
+        // Удаляем все лайки, связанные с этим фильмом
+        likes.removeFilm(filmId);
+        popularityIndex.remove(filmId);
+        trendingIndex.remove(filmId);
+        return true;
+    }
+
+    private boolean insertLike(long filmId, long userId, Instant likedAt) {
+        if (!likes.add(filmId, userId)) {
+            return false;
+        }
+        // Счётчик в индексе популярности берётся из хранилища лайков
+        popularityIndex.set(filmId, likes.likeCount(filmId));
+        trendingIndex.record(filmId, likedAt);
+        recentLikes.record(filmId, userId, likedAt);
+        return true;
+    }
+
+    private boolean deleteLike(long filmId, long userId) {
+        if (!likes.remove(filmId, userId)) {
+            return false;
+        }
+        popularityIndex.set(filmId, likes.likeCount(filmId));
+        trendingIndex.retract(filmId, null);
+        recentLikes.retract(filmId, userId);
+        return true;
+    }
+
+    // Запись изменения в журнал и затем его применение в памяти; вызывается под блокировкой фильма.
+    // Возвращает позицию записи (0 без журнала)
+    private long journal(StorageJournal.RecordWriter writer, Runnable change) {
+        if (journal == null) {
+            change.run();
+            return 0;
+        }
+        return journal.append(writer, change);
+    }
+
+    private void awaitDurable(long position) {
+        if (journal != null && position > 0) {
+            journal.awaitDurable(position);
+        }
+    }
+
+    // Снимок: фильмы с ID пользователей, поставивших лайк, затем счётчик ID.
+    // Время лайков в снимок не входит, тренды и буферы ленты восстанавливаются только по хвосту журнала
+    private class JournalTarget implements StorageJournal.Target {
+
+        @Override
+        public void writeSnapshot(DataOutput out) throws IOException {
+            for (Film film : films.values()) {
+                out.writeBoolean(true);
+                EntityCodec.writeFilm(out, film);
+                int[] userIds = likes.usersOf(film.getId()).toArray();
+                out.writeInt(userIds.length);
+                for (int userId : userIds) {
+                    out.writeInt(userId);
+                }
+            }
+            out.writeBoolean(false);
+            // После обхода: все ID в снимке меньше записанного значения
+            out.writeLong(nextId.get());
+        }
+
+        @Override
+        public void readSnapshot(DataInput in) throws IOException {
+            while (in.readBoolean()) {
+                Film film = withDictionaryReferences(EntityCodec.readFilm(in));
+                putFilm(film);
+                int likeCount = in.readInt();
+                for (int i = 0; i < likeCount; i++) {
+                    likes.add(film.getId(), in.readInt());
+                }
+                popularityIndex.set(film.getId(), likes.likeCount(film.getId()));
+            }
+            nextId.set(in.readLong());
+        }
+
+        @Override
+        public void apply(DataInput record) throws IOException {
+            byte type = record.readByte();
+            switch (type) {
+                case FILM_PUT -> {
+                    Film film = withDictionaryReferences(EntityCodec.readFilm(record));
+                    putFilm(film);
+                    nextId.accumulateAndGet(film.getId() + 1, Math::max);
+                }
+                case FILM_REMOVE -> deleteFilm(record.readLong());
+                case LIKE_ADD -> {
+                    long filmId = record.readLong();
+                    long userId = record.readLong();
+                    Instant likedAt = Instant.ofEpochMilli(record.readLong());
+                    if (films.containsKey(filmId)) {
+                        insertLike(filmId, userId, likedAt);
+                    }
+                }
+                case LIKE_REMOVE -> deleteLike(record.readLong(), record.readLong());
+                default -> throw new IOException("Неизвестный тип записи журнала фильмов: " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.CompressedIntSet;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
+
+// Лайки в памяти: по ID фильма - сжатое множество ID пользователей, по ID пользователя - множество ID фильмов.
+// ID хранятся как int. Каждое множество читается и изменяется под собственным монитором; изменения лайков
+// одного фильма и его удаление вызывающий код выполняет последовательно (под блокировкой фильма).
+// В приложении хранилище одно: его заполняет хранилище фильмов (в памяти - как основное, с базой данных - как
+// копию таблицы likes), а индексы рекомендаций и похожих фильмов читают его и получают уведомления об изменениях.
+@Component
+public class LikeStore {
+    private final ConcurrentHashMap<Long, CompressedIntSet> usersByFilm = new ConcurrentHashMap<>();
+    // Опустевшие множества не удаляются: иначе добавление, успевшее получить множество, потеряло бы фильм
+    private final ConcurrentHashMap<Long, CompressedIntSet> filmsByUser = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Получатель изменений; вызывается в потоке, изменившем хранилище, после изменения и вне мониторов множеств.
+    // Загрузка через load и clear уведомлений не порождают - после них индексы перестраиваются целиком
+    public interface Listener {
+        void likeAdded(long filmId, long userId);
+
+        void likeRemoved(long filmId, long userId);
+
+        // Фильм удалён вместе с лайками пользователей userIds
+        void filmRemoved(long filmId, int[] userIds);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean add(long filmId, long userId) {
+        if (!load(filmId, userId)) {
+            return false;
+        }
+        listeners.forEach(listener -> listener.likeAdded(filmId, userId));
+        return true;
+    }
+
+    // Добавление лайка без уведомления слушателей (начальная загрузка)
+    public boolean load(long filmId, long userId) {
+        int film = toInt(filmId);
+        int user = toInt(userId);
+        CompressedIntSet users = usersByFilm.computeIfAbsent(filmId, id -> new CompressedIntSet());
+        synchronized (users) {
+            if (!users.add(user)) {
+                return false;
+            }
+        }
+        CompressedIntSet films = filmsByUser.computeIfAbsent(userId, id -> new CompressedIntSet());
+        synchronized (films) {
+            films.add(film);
+        }
+        return true;
+    }
+
+    public boolean remove(long filmId, long userId) {
+        CompressedIntSet users = usersByFilm.get(filmId);
+        if (users == null) {
+            return false;
+        }
+        synchronized (users) {
+            if (!users.remove(toInt(userId))) {
+                return false;
+            }
+        }
+        CompressedIntSet films = filmsByUser.get(userId);
+        if (films != null) {
+            synchronized (films) {
+                films.remove(toInt(filmId));
+            }
+        }
+        listeners.forEach(listener -> listener.likeRemoved(filmId, userId));
+        return true;
+    }
+
+    // Удаление всех лайков фильма, O(числа лайков); слушатели уведомляются и о фильме без лайков
+    public void removeFilm(long filmId) {
+        CompressedIntSet users = usersByFilm.remove(filmId);
+        int film = toInt(filmId);
+        int[] userIds;
+        if (users == null) {
+            userIds = new int[0];
+        } else {
+            synchronized (users) {
+                userIds = users.toArray();
+            }
+        }
+        for (int userId : userIds) {
+            CompressedIntSet films = filmsByUser.get((long) userId);
+            if (films != null) {
+                synchronized (films) {
+                    films.remove(film);
+                }
+            }
+        }
+        listeners.forEach(listener -> listener.filmRemoved(filmId, userIds));
+    }
+
+    public boolean contains(long filmId, long userId) {
+        CompressedIntSet users = usersByFilm.get(filmId);
+        if (users == null) {
+            return false;
+        }
+        synchronized (users) {
+            return users.contains(toInt(userId));
+        }
+    }
+
+    public int likeCount(long filmId) {
+        CompressedIntSet users = usersByFilm.get(filmId);
+        if (users == null) {
+            return 0;
+        }
+        synchronized (users) {
+            return users.cardinality();
+        }
+    }
+
+    // Копия множества пользователей, поставивших лайк фильму
+    public CompressedIntSet usersOf(long filmId) {
+        return snapshot(usersByFilm.get(filmId));
+    }
+
+    // Копия множества фильмов, которым пользователь поставил лайк
+    public CompressedIntSet filmsOf(long userId) {
+        return snapshot(filmsByUser.get(userId));
+    }
+
+    public int filmCount(long userId) {
+        CompressedIntSet films = filmsByUser.get(userId);
+        if (films == null) {
+            return 0;
+        }
+        synchronized (films) {
+            return films.cardinality();
+        }
+    }
+
+    // Обход фильмов пользователя без копирования множества; consumer выполняется под монитором множества
+    // и не должен обращаться к хранилищу
+    public void forEachFilmOf(long userId, IntConsumer consumer) {
+        CompressedIntSet films = filmsByUser.get(userId);
+        if (films == null) {
+            return;
+        }
+        synchronized (films) {
+            films.forEach(consumer);
+        }
+    }
+
+    // Обход пользователей, поставивших лайк фильму, без копирования множества (ограничения - как в forEachFilmOf)
+    public void forEachUserOf(long filmId, IntConsumer consumer) {
+        CompressedIntSet users = usersByFilm.get(filmId);
+        if (users == null) {
+            return;
+        }
+        synchronized (users) {
+            users.forEach(consumer);
+        }
+    }
+
+    // ID фильмов, у которых есть или были лайки
+    public long[] filmIds() {
+        return usersByFilm.keySet().stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    // Число пользователей, поставивших лайк обоим фильмам
+    public int commonLikeCount(long filmId, long otherFilmId) {
+        return commonLikeCount(usersOf(filmId), otherFilmId);
+    }
+
+    // Число пользователей из users, поставивших лайк фильму (users - копия, полученная через usersOf)
+    public int commonLikeCount(CompressedIntSet users, long otherFilmId) {
+        CompressedIntSet other = usersByFilm.get(otherFilmId);
+        if (other == null) {
+            return 0;
+        }
+        synchronized (other) {
+            return users.andCardinality(other);
+        }
+    }
+
+    // Приблизительный объём множеств в куче, байт (без учёта самих хеш-таблиц)
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (CompressedIntSet set : usersByFilm.values()) {
+            synchronized (set) {
+                bytes += set.sizeInBytes();
+            }
+        }
+        for (CompressedIntSet set : filmsByUser.values()) {
+            synchronized (set) {
+                bytes += set.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    public void clear() {
+        usersByFilm.clear();
+        filmsByUser.clear();
+    }
+
+    private static CompressedIntSet snapshot(CompressedIntSet set) {
+        if (set == null) {
+            return new CompressedIntSet();
+        }
+        synchronized (set) {
+            return set.copy();
+        }
+    }
+
+    private static int toInt(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ID " + id + " вне диапазона хранилища лайков.");
+        }
+        return (int) id;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+// Индекс популярности фильмов: число лайков по ID фильма и упорядоченный набор для выборки top-k.
+// Обновление счётчика - O(log n), чтение k самых популярных фильмов - O(k).
+public class PopularityIndex implements MeterBinder {
+    // Больше лайков - выше; при равенстве - меньший ID
+    private static final Comparator<Entry> ORDER = (a, b) -> a.likes() != b.likes()
+            ? Long.compare(b.likes(), a.likes())
+            : Long.compare(a.filmId(), b.filmId());
+
+    private final String storage;
+    private final ConcurrentHashMap<Long, Long> likes = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+    private final LongAdder updates = new LongAdder();
+
+    public PopularityIndex(String storage) {
+        this.storage = storage;
+    }
+
+    // Регистрация нового фильма без лайков
+    public void add(long filmId) {
+        likes.computeIfAbsent(filmId, id -> {
+            ranking.add(new Entry(id, 0));
+            return 0L;
+        });
+    }
+
+    public void increment(long filmId) {
+        adjust(filmId, 1);
+    }
+
+    public void decrement(long filmId) {
+        adjust(filmId, -1);
+    }
+
+    // Установка точного значения счётчика (например, после сверки с базой данных)
+    public void set(long filmId, long count) {
+        likes.compute(filmId, (id, old) -> move(id, old, count));
+        updates.increment();
+    }
+
+    public void remove(long filmId) {
+        likes.computeIfPresent(filmId, (id, old) -> {
+            ranking.remove(new Entry(id, old));
+            return null;
+        });
+        updates.increment();
+    }
+
+    public boolean contains(long filmId) {
+        return likes.containsKey(filmId);
+    }
+
+    public void clear() {
+        likes.clear();
+        ranking.clear();
+    }
+
+    // ID k самых популярных фильмов в порядке убывания числа лайков
+    public List<Long> top(int k) {
+        Set<Long> result = new LinkedHashSet<>();
+        for (Entry entry : ranking) {
+            if (result.size() >= k) {
+                break;
+            }
+            // Во время обновления фильм может ненадолго присутствовать в наборе дважды
+            result.add(entry.filmId());
+        }
+        return new ArrayList<>(result);
+    }
+
+    public int size() {
+        return likes.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.popularity.index.size", this, PopularityIndex::size)
+                .description("Число фильмов в индексе популярности")
+                .tag("storage", storage)
+                .register(registry);
+        FunctionCounter.builder("filmorate.popularity.index.updates", updates, LongAdder::sum)
+                .description("Число обновлений индекса популярности")
+                .tag("storage", storage)
+                .register(registry);
+    }
+
+    private void adjust(long filmId, long delta) {
+        likes.compute(filmId, (id, old) -> move(id, old, Math.max(0, (old == null ? 0 : old) + delta)));
+        updates.increment();
+    }
+
+    // Вызывается внутри compute, поэтому изменения по одному фильму не пересекаются.
+    // Новая позиция добавляется раньше удаления старой, чтобы фильм не пропадал из выборки.
+    private Long move(long filmId, Long old, long count) {
+        ranking.add(new Entry(filmId, count));
+        if (old != null && old != count) {
+            ranking.remove(new Entry(filmId, old));
+        }
+        return count;
+    }
+
+    private record Entry(long filmId, long likes) {
+    }
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+// Последние лайки пользователей: по ID пользователя - кольцевой буфер из capacity самых новых лайков
+// (ID фильма и время). Лента друзей строится k-путевым слиянием их буферов от новых к старым:
+// в куче по одному курсору на друга, поэтому выборка count лайков стоит O(k + count * log k)
+// независимо от общего числа лайков друзей.
+public class RecentLikeIndex {
+    private final int capacity;
+    private final ConcurrentHashMap<Long, Ring> rings = new ConcurrentHashMap<>();
+
+    // Лайк из ленты: при нескольких лайках фильма друзьями - самый новый
+    public record RecentLike(long filmId, long userId, Instant likedAt) {
+    }
+
+    public RecentLikeIndex(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер буфера последних лайков должен быть больше 0.");
+        }
+        this.capacity = capacity;
+    }
+
+    public void record(long filmId, long userId, Instant likedAt) {
+        rings.computeIfAbsent(userId, id -> new Ring(capacity)).add(filmId, likedAt.toEpochMilli());
+    }
+
+    public void retract(long filmId, long userId) {
+        Ring ring = rings.get(userId);
+        if (ring != null) {
+            ring.remove(filmId);
+        }
+    }
+
+    public void clear() {
+        rings.clear();
+    }
+
+    // До count лайков пользователей userIds не старше since, от новых к старым, по одному на фильм.
+    // Фильмы, для которых filmExists возвращает false (удалённые), пропускаются
+    public List<RecentLike> merge(long[] userIds, int count, Instant since, LongPredicate filmExists) {
+        long sinceMillis = since.toEpochMilli();
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, userIds.length));
+        for (long userId : userIds) {
+            Ring ring = rings.get(userId);
+            if (ring != null) {
+                Cursor cursor = new Cursor(userId, ring);
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+        }
+
+        List<RecentLike> result = new ArrayList<>(count);
+        Set<Long> seen = new HashSet<>();
+        while (result.size() < count && !heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            if (cursor.likedAt < sinceMillis) {
+                break; // у остальных курсоров лайки ещё старше
+            }
+            if (filmExists.test(cursor.filmId) && seen.add(cursor.filmId)) {
+                result.add(new RecentLike(cursor.filmId, cursor.userId, Instant.ofEpochMilli(cursor.likedAt)));
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    // Буфер лайков одного пользователя, упорядоченный по времени; при переполнении вытесняется самый старый.
+    // Повторный лайк того же фильма не записывается
+    private static class Ring {
+        private final long[] filmIds;
+        private final long[] times;
+        private int head; // позиция следующей записи
+        private int size;
+
+        private Ring(int capacity) {
+            filmIds = new long[capacity];
+            times = new long[capacity];
+        }
+
+        private synchronized void add(long filmId, long likedAt) {
+            if (indexOf(filmId) >= 0) {
+                return;
+            }
+            // Лайки приходят почти по порядку, поэтому обычно position = 0 и сдвигов нет
+            int position = 0;
+            while (position < size && times[slot(position)] > likedAt) {
+                position++;
+            }
+            if (position == filmIds.length) {
+                return; // старше всех лайков полного буфера
+            }
+            // Голова сдвигается на новую позицию (при полном буфере - поверх самого старого лайка),
+            // более новые лайки переносятся на одну позицию к голове
+            head = (head + 1) % filmIds.length;
+            size = Math.min(size + 1, filmIds.length);
+            for (int i = 0; i < position; i++) {
+                filmIds[slot(i)] = filmIds[slot(i + 1)];
+                times[slot(i)] = times[slot(i + 1)];
+            }
+            filmIds[slot(position)] = filmId;
+            times[slot(position)] = likedAt;
+        }
+
+        private synchronized void remove(long filmId) {
+            int index = indexOf(filmId);
+            if (index < 0) {
+                return;
+            }
+            // Более новые лайки сдвигаются на место удалённого, голова отступает на одну позицию
+            for (int i = index; i > 0; i--) {
+                filmIds[slot(i)] = filmIds[slot(i - 1)];
+                times[slot(i)] = times[slot(i - 1)];
+            }
+            head = (head - 1 + filmIds.length) % filmIds.length;
+            size--;
+        }
+
+        // Лайк с номером age от самого нового (0); false, если такого нет
+        private synchronized boolean read(int age, Cursor cursor) {
+            if (age >= size) {
+                return false;
+            }
+            cursor.filmId = filmIds[slot(age)];
+            cursor.likedAt = times[slot(age)];
+            return true;
+        }
+
+        private int indexOf(long filmId) {
+            for (int i = 0; i < size; i++) {
+                if (filmIds[slot(i)] == filmId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Позиция в массивах лайка с номером age от самого нового
+        private int slot(int age) {
+            return (head - 1 - age + 2 * filmIds.length) % filmIds.length;
+        }
+    }
+
+    // Позиция слияния в буфере одного пользователя. Буфер читается по одному лайку: параллельная запись
+    // может сдвинуть его, и тогда лайк пропускается или читается повторно (повтор отсеивается по фильму)
+    private static class Cursor implements Comparable<Cursor> {
+        private final long userId;
+        private final Ring ring;
+        private int age = -1;
+        private long filmId;
+        private long likedAt;
+
+        private Cursor(long userId, Ring ring) {
+            this.userId = userId;
+            this.ring = ring;
+        }
+
+        private boolean advance() {
+            age++;
+            return ring.read(age, this);
+        }
+
+        // Более новый лайк - в голове кучи
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(other.likedAt, likedAt);
+        }
+    }
+}
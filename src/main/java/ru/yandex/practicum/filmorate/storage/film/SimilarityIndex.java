@@ -0,0 +1,339 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.util.CompressedIntSet;
+import ru.yandex.practicum.filmorate.util.LongCountMap;
+import ru.yandex.practicum.filmorate.util.StripedLocks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Похожие фильмы: взвешенная сумма мер Жаккара по жанрам и по множествам пользователей, поставивших лайк.
+// Кандидаты ищутся без обхода каталога:
+// - по аудитории - через LSH: MinHash-подпись фильма из SIGNATURE_SIZE значений делится на BANDS полос,
+//   фильмы с совпадающей полосой попадают в одну корзину (пары с мерой Жаккара 0.5 совпадают хотя бы
+//   в одной полосе с вероятностью ~0.64, с мерой 0.8 - почти наверняка);
+// - по жанрам - объединением битовых карт фильмов каждого жанра фильма с подсчётом общих жанров.
+// До отсечения maxCandidates кандидаты ранжируются по оценке сходства, точное сходство считается только для
+// отобранных. Лайки читаются из общего LikeStore, об их изменениях индекс узнаёт как слушатель хранилища.
+// Подпись обновляется при лайке за O(SIGNATURE_SIZE); при снятии лайка пересчитывается по лайкам фильма,
+// только если снятый пользователь давал один из минимумов.
+public class SimilarityIndex implements LikeStore.Listener {
+    private static final int BANDS = 16;
+    private static final int ROWS = 4;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final LikeStore likes;
+    private final ConcurrentHashMap<Long, long[]> genresByFilm = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompressedIntSet> filmsByGenre = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, int[]> signatures = new ConcurrentHashMap<>();
+    // Корзины LSH: ключ - хеш номера полосы и её значений
+    private final ConcurrentHashMap<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+    // Изменения одного фильма (жанры, лайки, подпись) выполняются последовательно
+    private final StripedLocks locks = new StripedLocks(64);
+    private final double genreWeight;
+    private final int maxCandidates;
+
+    public SimilarityIndex(LikeStore likes, double genreWeight, int maxCandidates) {
+        if (genreWeight < 0 || genreWeight > 1) {
+            throw new IllegalArgumentException("Вес жанров должен быть от 0 до 1.");
+        }
+        this.likes = likes;
+        this.genreWeight = genreWeight;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public void setGenres(long filmId, Collection<Long> genreIds) {
+        long[] genres = genreIds.stream()
+                .mapToLong(Long::longValue)
+                .distinct()
+                .sorted()
+                .toArray();
+        int film = toInt(filmId);
+        locks.run(filmId, () -> {
+            removeGenres(filmId);
+            genresByFilm.put(filmId, genres);
+            for (long genreId : genres) {
+                CompressedIntSet films = filmsByGenre.computeIfAbsent(genreId, id -> new CompressedIntSet());
+                synchronized (films) {
+                    films.add(film);
+                }
+            }
+        });
+    }
+
+    // Построение подписей всех фильмов по лайкам хранилища
+    public void buildSignatures() {
+        for (long filmId : likes.filmIds()) {
+            locks.run(filmId, () -> updateSignature(filmId, computeSignature(filmId)));
+        }
+    }
+
+    public void clear() {
+        genresByFilm.clear();
+        filmsByGenre.clear();
+        signatures.clear();
+        buckets.clear();
+    }
+
+    // Уведомления о лайках одного фильма могут прийти не в порядке изменений, поэтому под блокировкой фильма
+    // проверяется текущее состояние хранилища: подпись снижается, только если лайк всё ещё есть
+    @Override
+    public void likeAdded(long filmId, long userId) {
+        locks.run(filmId, () -> {
+            if (!likes.contains(filmId, userId)) {
+                return; // лайк уже снят
+            }
+            int[] old = signatures.get(filmId);
+            int[] signature = old != null ? old.clone() : emptySignature();
+            boolean changed = false;
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                int hash = hash(userId, i);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                updateSignature(filmId, signature);
+            }
+        });
+    }
+
+    @Override
+    public void likeRemoved(long filmId, long userId) {
+        locks.run(filmId, () -> {
+            if (likes.contains(filmId, userId)) {
+                return; // лайк поставлен снова
+            }
+            int[] signature = signatures.get(filmId);
+            if (signature == null) {
+                return;
+            }
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                if (hash(userId, i) == signature[i]) {
+                    updateSignature(filmId, computeSignature(filmId));
+                    return;
+                }
+            }
+        });
+    }
+
+    // Удалённый фильм уходит из корзин и битовых карт жанров
+    @Override
+    public void filmRemoved(long filmId, int[] userIds) {
+        locks.run(filmId, () -> {
+            removeGenres(filmId);
+            updateSignature(filmId, computeSignature(filmId));
+        });
+    }
+
+    // ID до count фильмов, похожих на filmId, в порядке убывания сходства (при равенстве - меньший ID)
+    public List<Long> similar(long filmId, int count) {
+        long[] genres = genresByFilm.getOrDefault(filmId, new long[0]);
+        // Для каждого кандидата - число полос подписи, совпавших с полосами фильма, и число общих жанров
+        LongCountMap bandMatches = new LongCountMap(64);
+        int[] signature = signatures.get(filmId);
+        if (signature != null) {
+            for (int band = 0; band < BANDS; band++) {
+                Set<Long> bucket = buckets.get(bandKey(signature, band));
+                if (bucket != null) {
+                    bucket.forEach(bandMatches::increment);
+                }
+            }
+        }
+        LongCountMap commonGenres = new LongCountMap(64);
+        for (long genreId : genres) {
+            CompressedIntSet films = filmsByGenre.get(genreId);
+            if (films != null) {
+                synchronized (films) {
+                    films.forEach(commonGenres::increment);
+                }
+            }
+        }
+
+        // Отбор maxCandidates кандидатов с наибольшей оценкой сходства: мера Жаккара по жанрам точная,
+        // по аудитории - по доле совпавших полос b (полоса совпадает с вероятностью s^ROWS, откуда s ~ b^(1/ROWS))
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(Scored.ORDER);
+        LongCountMap.EntryConsumer estimate = (candidate, ignored) -> {
+            if (candidate == filmId) {
+                return;
+            }
+            long[] candidateGenres = genresByFilm.getOrDefault(candidate, new long[0]);
+            int common = commonGenres.get(candidate);
+            double genreScore = common == 0 ? 0 : (double) common / (genres.length + candidateGenres.length - common);
+            double audienceScore = Math.pow((double) bandMatches.get(candidate) / BANDS, 1.0 / ROWS);
+            candidates.add(new Scored(candidate, genreWeight * genreScore + (1 - genreWeight) * audienceScore));
+            if (candidates.size() > maxCandidates) {
+                candidates.poll();
+            }
+        };
+        bandMatches.forEach(estimate);
+        commonGenres.forEach((candidate, common) -> {
+            if (bandMatches.get(candidate) == 0) {
+                estimate.accept(candidate, common);
+            }
+        });
+
+        // Лайки фильма копируются один раз для всех кандидатов
+        CompressedIntSet users = likes.usersOf(filmId);
+        PriorityQueue<Scored> best = new PriorityQueue<>(Scored.ORDER);
+        for (Scored scored : candidates) {
+            long candidate = scored.filmId();
+            double score = similarity(genres, users, candidate);
+            if (score <= 0) {
+                continue;
+            }
+            best.add(new Scored(candidate, score));
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        Long[] result = new Long[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll().filmId();
+        }
+        return Arrays.asList(result);
+    }
+
+    // Точное сходство двух фильмов
+    public double similarity(long filmId, long otherFilmId) {
+        return similarity(genresByFilm.getOrDefault(filmId, new long[0]), likes.usersOf(filmId), otherFilmId);
+    }
+
+    private double similarity(long[] genres, CompressedIntSet users, long otherFilmId) {
+        double genreScore = jaccard(genres, genresByFilm.getOrDefault(otherFilmId, new long[0]));
+        int likesA = users.cardinality();
+        int likesB = likes.likeCount(otherFilmId);
+        double audienceScore = 0;
+        if (likesA > 0 && likesB > 0) {
+            int common = likes.commonLikeCount(users, otherFilmId);
+            audienceScore = (double) common / (likesA + likesB - common);
+        }
+        return genreWeight * genreScore + (1 - genreWeight) * audienceScore;
+    }
+
+    // Удаление фильма из битовых карт его жанров; вызывается под блокировкой фильма
+    private void removeGenres(long filmId) {
+        long[] old = genresByFilm.remove(filmId);
+        if (old == null) {
+            return;
+        }
+        int film = toInt(filmId);
+        for (long genreId : old) {
+            CompressedIntSet films = filmsByGenre.get(genreId);
+            synchronized (films) {
+                films.remove(film);
+            }
+        }
+    }
+
+    private int[] computeSignature(long filmId) {
+        int[] signature = emptySignature();
+        likes.forEachUserOf(filmId, userId -> {
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                signature[i] = Math.min(signature[i], hash(userId, i));
+            }
+        });
+        return signature;
+    }
+
+    // Замена подписи и перенос фильма в корзины изменившихся полос; вызывается под блокировкой фильма
+    private void updateSignature(long filmId, int[] signature) {
+        boolean empty = likes.likeCount(filmId) == 0; // у фильма не осталось лайков
+        int[] old = empty ? signatures.remove(filmId) : signatures.put(filmId, signature);
+        for (int band = 0; band < BANDS; band++) {
+            Long oldKey = old != null ? bandKey(old, band) : null;
+            Long newKey = empty ? null : bandKey(signature, band);
+            if (oldKey != null && oldKey.equals(newKey)) {
+                continue;
+            }
+            if (oldKey != null) {
+                buckets.computeIfPresent(oldKey, (key, films) -> {
+                    films.remove(filmId);
+                    return films.isEmpty() ? null : films;
+                });
+            }
+            if (newKey != null) {
+                buckets.compute(newKey, (key, films) -> {
+                    Set<Long> bucket = films != null ? films : ConcurrentHashMap.newKeySet();
+                    bucket.add(filmId);
+                    return bucket;
+                });
+            }
+        }
+    }
+
+    private static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 && b.length == 0) {
+            return 0;
+        }
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) common / (a.length + b.length - common);
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = key * 0x9E3779B97F4A7C15L + signature[row];
+        }
+        return mix(key);
+    }
+
+    private static int[] emptySignature() {
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        return signature;
+    }
+
+    // i-я хеш-функция MinHash
+    private static int hash(long userId, int i) {
+        return (int) (mix(userId ^ SEEDS[i]) >>> 33);
+    }
+
+    // Финальное перемешивание SplitMix64
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    private static int toInt(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ID " + id + " вне диапазона индекса похожих фильмов.");
+        }
+        return (int) id;
+    }
+
+    private record Scored(long filmId, double score) {
+        // Худший кандидат - в голове кучи: меньшее сходство, при равенстве - больший ID
+        private static final Comparator<Scored> ORDER = Comparator.comparingDouble(Scored::score)
+                .thenComparing(Comparator.comparingLong(Scored::filmId).reversed());
+    }
+}
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Скользящие счётчики лайков для трендов: у каждого фильма кольцевой буфер из bucketCount корзин
+// длительностью bucketDuration. Рейтинг для окна пересчитывается не чаще одного раза в refreshInterval,
+// запрос трендов между пересчётами только читает готовый список.
+public class TrendingIndex {
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final long refreshMillis;
+    private final Clock clock;
+    private final ConcurrentHashMap<Long, WindowCounter> counters = new ConcurrentHashMap<>();
+    // Готовые рейтинги по числу корзин в окне
+    private final ConcurrentHashMap<Integer, Ranking> rankings = new ConcurrentHashMap<>();
+
+    public TrendingIndex(Duration bucketDuration, int bucketCount, Duration refreshInterval) {
+        this(bucketDuration, bucketCount, refreshInterval, Clock.systemUTC());
+    }
+
+    public TrendingIndex(Duration bucketDuration, int bucketCount, Duration refreshInterval, Clock clock) {
+        this.bucketMillis = bucketDuration.toMillis();
+        this.bucketCount = bucketCount;
+        this.refreshMillis = refreshInterval.toMillis();
+        this.clock = clock;
+    }
+
+    // Максимальное окно, для которого хранятся счётчики
+    public Duration maxWindow() {
+        return Duration.ofMillis(bucketMillis * bucketCount);
+    }
+
+    public void record(long filmId, Instant likedAt) {
+        long bucket = bucketOf(likedAt);
+        if (bucket <= currentBucket() - bucketCount) {
+            return; // лайк старше максимального окна
+        }
+        counters.compute(filmId, (id, counter) -> {
+            WindowCounter result = counter != null ? counter : new WindowCounter(bucketCount);
+            result.add(bucket, 1);
+            return result;
+        });
+    }
+
+    // Отмена лайка; если время лайка неизвестно (null), уменьшается самая свежая непустая корзина
+    public void retract(long filmId, Instant likedAt) {
+        WindowCounter counter = counters.get(filmId);
+        if (counter == null) {
+            return;
+        }
+        if (likedAt != null) {
+            counter.add(bucketOf(likedAt), -1);
+        } else {
+            counter.retractNewest(currentBucket());
+        }
+    }
+
+    public void remove(long filmId) {
+        counters.remove(filmId);
+    }
+
+    public void clear() {
+        counters.clear();
+        rankings.clear();
+    }
+
+    // ID фильмов с наибольшим числом лайков за окно window, не больше count
+    public List<Long> top(Duration window, int count) {
+        int buckets = (int) Math.min(bucketCount, Math.max(1, (window.toMillis() + bucketMillis - 1) / bucketMillis));
+        long now = clock.millis();
+        Ranking ranking = rankings.compute(buckets, (key, cached) ->
+                cached != null && now - cached.computedAt() < refreshMillis ? cached : rank(buckets, now));
+        List<Long> filmIds = ranking.filmIds();
+        return filmIds.subList(0, Math.min(count, filmIds.size()));
+    }
+
+    private Ranking rank(int buckets, long now) {
+        long current = now / bucketMillis;
+        List<long[]> totals = new ArrayList<>();
+        for (Map.Entry<Long, WindowCounter> entry : counters.entrySet()) {
+            // Фильм без лайков за максимальное окно больше не нужен в индексе
+            WindowCounter counter = counters.computeIfPresent(entry.getKey(),
+                    (id, existing) -> existing.isExpired(current) ? null : existing);
+            if (counter == null) {
+                continue;
+            }
+            long total = counter.sum(current, buckets);
+            if (total > 0) {
+                totals.add(new long[]{entry.getKey(), total});
+            }
+        }
+        totals.sort(Comparator.<long[]>comparingLong(total -> -total[1]).thenComparingLong(total -> total[0]));
+        return new Ranking(now, totals.stream().map(total -> total[0]).toList());
+    }
+
+    private long currentBucket() {
+        return clock.millis() / bucketMillis;
+    }
+
+    private long bucketOf(Instant instant) {
+        return instant.toEpochMilli() / bucketMillis;
+    }
+
+    private record Ranking(long computedAt, List<Long> filmIds) {
+    }
+
+    // Кольцевой буфер корзин одного фильма; epochs хранит номер корзины, к которой относится ячейка
+    private static final class WindowCounter {
+        private final long[] counts;
+        private final long[] epochs;
+
+        private WindowCounter(int size) {
+            counts = new long[size];
+            epochs = new long[size];
+        }
+
+        synchronized void add(long bucket, long delta) {
+            int slot = slot(bucket);
+            if (epochs[slot] != bucket) {
+                if (delta < 0) {
+                    return; // корзина уже вытеснена более свежими данными
+                }
+                epochs[slot] = bucket;
+                counts[slot] = 0;
+            }
+            counts[slot] = Math.max(0, counts[slot] + delta);
+        }
+
+        synchronized void retractNewest(long current) {
+            for (int i = 0; i < counts.length; i++) {
+                int slot = slot(current - i);
+                if (epochs[slot] == current - i && counts[slot] > 0) {
+                    counts[slot]--;
+                    return;
+                }
+            }
+        }
+
+        synchronized long sum(long current, int buckets) {
+            long total = 0;
+            for (int i = 0; i < buckets; i++) {
+                int slot = slot(current - i);
+                if (epochs[slot] == current - i) {
+                    total += counts[slot];
+                }
+            }
+            return total;
+        }
+
+        synchronized boolean isExpired(long current) {
+            for (int slot = 0; slot < counts.length; slot++) {
+                if (counts[slot] > 0 && epochs[slot] > current - counts.length) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) counts.length);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал только для дозаписи: сегменты фиксированного размера, отображённые в память.
+// Запись: длина данных (int), CRC32 данных (int), данные; нулевая длина - конец записанной части сегмента.
+// Групповая фиксация: поток, ожидающий сохранности своей записи, становится ведущим и одним force()
+// сохраняет все записи, накопленные к этому моменту; остальные ждут его или становятся ведущими следующего.
+@Slf4j
+public class AppendOnlyLog implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition durableChanged = lock.newCondition();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segment;
+    // Номер последней записанной и последней сохранённой на диск записи
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private boolean closed;
+
+    private AppendOnlyLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    // Открытие для записи: новый сегмент после всех существующих, старые сегменты не изменяются
+    public static AppendOnlyLog open(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = segments(directory);
+        AppendOnlyLog log = new AppendOnlyLog(directory, segmentSize);
+        log.openSegment(segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1);
+        return log;
+    }
+
+    // Чтение целых записей из сегментов, начиная с fromSegment. Недописанный или повреждённый хвост сегмента
+    // (сбой во время записи) пропускается: после перезапуска запись продолжается в следующем сегменте.
+    public static void replay(Path directory, long fromSegment, Consumer<ByteBuffer> consumer) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        for (long segment : segments(directory)) {
+            if (segment < fromSegment) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path(directory, segment), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    ByteBuffer data = buffer.slice(buffer.position(), length);
+                    CRC32 crc = new CRC32();
+                    crc.update(data.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        log.warn("Повреждённая запись в сегменте журнала {}, остаток сегмента пропущен",
+                                path(directory, segment));
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    consumer.accept(data);
+                }
+            }
+        }
+    }
+
+    // Возвращает номер записи для awaitDurable
+    public long append(byte[] data) {
+        if (data.length == 0 || HEADER_SIZE + data.length + 4 > segmentSize) {
+            throw new IllegalArgumentException("Недопустимый размер записи журнала: " + data.length + " байт");
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Журнал закрыт.");
+            }
+            // В конце сегмента остаётся место под нулевую длину - признак конца
+            if (buffer.remaining() < HEADER_SIZE + data.length + 4) {
+                switchSegment(segment + 1);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            buffer.putInt(data.length)
+                    .putInt((int) crc.getValue())
+                    .put(data);
+            return ++appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть новый сегмент журнала", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ожидание, пока запись с номером position и все предыдущие не будут сохранены на диск
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durable < position) {
+                if (flushing) {
+                    durableChanged.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                long target = appended;
+                MappedByteBuffer current = buffer;
+                lock.unlock();
+                try {
+                    current.force();
+                } finally {
+                    lock.lock();
+                    flushing = false;
+                    durableChanged.signalAll();
+                }
+                durable = Math.max(durable, target);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Переключение на новый сегмент; все записи после переключения попадут в сегменты с номером не меньше
+    // возвращаемого
+    public long rotate() throws IOException {
+        lock.lock();
+        try {
+            switchSegment(segment + 1);
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Удаление сегментов, уже учтённых в снимке
+    public void deleteSegmentsBefore(long fromSegment) throws IOException {
+        for (long old : segments(directory)) {
+            if (old < fromSegment) {
+                Files.deleteIfExists(path(directory, old));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            buffer.force();
+            durable = appended;
+            closed = true;
+            channel.close();
+            durableChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void switchSegment(long next) throws IOException {
+        // Предыдущий сегмент сохраняется целиком, поэтому все записи до переключения становятся сохранёнными
+        buffer.force();
+        durable = appended;
+        durableChanged.signalAll();
+        channel.close();
+        openSegment(next);
+    }
+
+    private void openSegment(long next) throws IOException {
+        channel = FileChannel.open(path(directory, next), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        // force() отображения сохраняет только данные: размер файла и запись о нём в каталоге сохраняются здесь,
+        // иначе после сбоя сегмент с уже подтверждёнными записями может пропасть
+        channel.force(true);
+        syncDirectory(directory);
+        segment = next;
+    }
+
+    // Сохранение на диск изменений каталога (созданных и переименованных файлов). Там, где каталог нельзя
+    // открыть как файл (Windows), изменения каталога сохраняет сама файловая система
+    static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            log.debug("Каталог {} не открывается для синхронизации: {}", directory, e.getMessage());
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static List<Long> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX) && name.length() == 16 + SUFFIX.length())
+                    .map(name -> Long.parseLong(name.substring(0, 16)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Path path(Path directory, long segment) {
+        return directory.resolve(String.format("%016d", segment) + SUFFIX);
+    }
+}
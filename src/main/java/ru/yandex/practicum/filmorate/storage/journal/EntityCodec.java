@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Двоичное представление фильмов и пользователей в журнале и снимках хранилищ в памяти.
+// Каждое поле, допускающее null, предваряется признаком наличия.
+public final class EntityCodec {
+
+    private EntityCodec() {
+    }
+
+    public static void writeFilm(DataOutput out, Film film) throws IOException {
+        out.writeLong(film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        writeLong(out, film.getDuration());
+        out.writeBoolean(film.getMpa() != null);
+        if (film.getMpa() != null) {
+            writeLong(out, film.getMpa().getId());
+            writeString(out, film.getMpa().getName());
+        }
+        List<Genre> genres = film.getGenres();
+        out.writeInt(genres != null ? genres.size() : -1);
+        if (genres != null) {
+            for (Genre genre : genres) {
+                writeLong(out, genre.getId());
+                writeString(out, genre.getName());
+            }
+        }
+    }
+
+    public static Film readFilm(DataInput in) throws IOException {
+        Film film = new Film();
+        film.setId(in.readLong());
+        film.setName(readString(in));
+        film.setDescription(readString(in));
+        film.setReleaseDate(readDate(in));
+        film.setDuration(readLong(in));
+        if (in.readBoolean()) {
+            film.setMpa(new Rating(readLong(in), readString(in)));
+        }
+        int genreCount = in.readInt();
+        if (genreCount >= 0) {
+            List<Genre> genres = new ArrayList<>(genreCount);
+            for (int i = 0; i < genreCount; i++) {
+                genres.add(new Genre(readLong(in), readString(in)));
+            }
+            film.setGenres(genres);
+        }
+        return film;
+    }
+
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeLong(user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+    }
+
+    public static User readUser(DataInput in) throws IOException {
+        User user = new User();
+        user.setId(in.readLong());
+        user.setEmail(readString(in));
+        user.setLogin(readString(in));
+        user.setName(readString(in));
+        user.setBirthday(readDate(in));
+        return user;
+    }
+
+    // Длина в байтах UTF-8 и байты: writeUTF ограничен 65535 байтами
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeDate(DataOutput out, LocalDate value) throws IOException {
+        writeLong(out, value != null ? value.toEpochDay() : null);
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        Long epochDay = readLong(in);
+        return epochDay != null ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+}
@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Журнал изменений и снимки одного хранилища в памяти.
+// Хранилище, не отпуская блокировку ключа, пишет изменение в журнал и только затем применяет его в памяти:
+// если запись не удалась, память не меняется. Снимок нечёткий: журнал переключается на новый сегмент,
+// после чего состояние читается без остановки записи. Переключение дожидается применения начатых изменений,
+// поэтому всё из сегментов до переключения уже видно в памяти. Остальное записано в сегменты после
+// переключения, а записи идемпотентны, поэтому при восстановлении снимок и хвост журнала дают состояние
+// на момент последней сохранённой записи.
+@Slf4j
+public class StorageJournal implements Closeable {
+    private static final int SNAPSHOT_MAGIC = 0x464D5331;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final Target target;
+    private final AppendOnlyLog appendLog;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // Изменения (запись в журнал и применение в памяти) идут под общей блокировкой, переключение сегмента -
+    // под исключающей
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+
+    // Хранилище, состояние которого сохраняется журналом
+    public interface Target {
+        void writeSnapshot(DataOutput out) throws IOException;
+
+        void readSnapshot(DataInput in) throws IOException;
+
+        // Применение записи журнала при восстановлении; запись, которую нельзя применить, пропускается
+        void apply(DataInput record) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private StorageJournal(Path directory, Target target, AppendOnlyLog appendLog) {
+        this.directory = directory;
+        this.target = target;
+        this.appendLog = appendLog;
+    }
+
+    // Восстановление состояния из последнего снимка и хвоста журнала и открытие журнала для записи
+    public static StorageJournal open(Path directory, int segmentSize, Target target) throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        long fromSegment = loadSnapshot(directory, target);
+        long[] records = new long[1];
+        AppendOnlyLog.replay(directory, fromSegment, data -> {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            try {
+                target.apply(new DataInputStream(new ByteArrayInputStream(bytes)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось применить запись журнала", e);
+            }
+            records[0]++;
+        });
+        log.info("Хранилище {} восстановлено: снимок до сегмента {}, записей журнала {}, {} мс", directory,
+                fromSegment, records[0], (System.nanoTime() - started) / 1_000_000);
+        return new StorageJournal(directory, target, AppendOnlyLog.open(directory, segmentSize));
+    }
+
+    // Запись изменения в журнал и его применение в памяти (change не должен выбрасывать исключений);
+    // возвращает позицию для awaitDurable
+    public long append(RecordWriter writer, Runnable change) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rotationLock.readLock().lock();
+        try {
+            long position = appendLog.append(bytes.toByteArray());
+            change.run();
+            return position;
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    public void awaitDurable(long position) {
+        appendLog.awaitDurable(position);
+    }
+
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long started = System.nanoTime();
+            long fromSegment;
+            rotationLock.writeLock().lock();
+            try {
+                fromSegment = appendLog.rotate();
+            } finally {
+                rotationLock.writeLock().unlock();
+            }
+            Path temp = directory.resolve(SNAPSHOT_PREFIX + "tmp");
+            try (CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16), new CRC32());
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(fromSegment);
+                target.writeSnapshot(out);
+                out.flush();
+                out.writeLong(checked.getChecksum().getValue());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, snapshotPath(directory, fromSegment), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            // Переименование сохраняется в каталоге до удаления старых снимков и сегментов
+            AppendOnlyLog.syncDirectory(directory);
+
+            // Старые снимки и сегменты больше не нужны для восстановления
+            for (Path old : snapshots(directory)) {
+                if (snapshotSegment(old) < fromSegment) {
+                    Files.deleteIfExists(old);
+                }
+            }
+            appendLog.deleteSegmentsBefore(fromSegment);
+            log.info("Снимок хранилища {} записан ({} байт) за {} мс", directory,
+                    Files.size(snapshotPath(directory, fromSegment)), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLog.close();
+    }
+
+    // Загрузка последнего целого снимка; возвращает номер сегмента, с которого нужно применять журнал
+    private static long loadSnapshot(Path directory, Target target) throws IOException {
+        for (Path snapshot : snapshots(directory)) {
+            if (!isValid(snapshot)) {
+                log.warn("Снимок {} повреждён и пропущен", snapshot);
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                in.readInt();
+                long fromSegment = in.readLong();
+                target.readSnapshot(in);
+                return fromSegment;
+            }
+        }
+        return 0;
+    }
+
+    // Контрольная сумма проверяется до загрузки, чтобы не применять частично повреждённый снимок
+    private static boolean isValid(Path snapshot) throws IOException {
+        long size = Files.size(snapshot);
+        if (size < 4 + 8 + 8) {
+            return false;
+        }
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16);
+             CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                return false;
+            }
+            in.skipNBytes(size - 4 - 8);
+            long expected = checked.getChecksum().getValue();
+            return in.readLong() == expected;
+        }
+    }
+
+    // Снимки от последнего к первому
+    private static List<Path> snapshots(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(StorageJournal::snapshotSegment).reversed())
+                    .toList();
+        }
+    }
+
+    private static long snapshotSegment(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private static Path snapshotPath(Path directory, long fromSegment) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%016d", fromSegment) + SNAPSHOT_SUFFIX);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Журналы хранилищ в памяти (filmorate.storage.journal.enabled): у каждого хранилища свой каталог
+// с сегментами журнала и снимками; снимки всех открытых журналов пишутся по расписанию.
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.storage.journal.enabled", havingValue = "true")
+public class StorageJournalFactory {
+    private final Path directory;
+    private final int segmentSize;
+    private final List<StorageJournal> journals = new CopyOnWriteArrayList<>();
+
+    public StorageJournalFactory(@Value("${filmorate.storage.journal.directory:data/journal}") String directory,
+                                 @Value("${filmorate.storage.journal.segment-size-mb:64}") int segmentSizeMb) {
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSizeMb << 20;
+    }
+
+    // Восстанавливает состояние target и открывает журнал для записи
+    public StorageJournal open(String name, StorageJournal.Target target) {
+        try {
+            StorageJournal journal = StorageJournal.open(directory.resolve(name), segmentSize, target);
+            journals.add(journal);
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилище " + name, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.storage.journal.snapshot-interval-ms:600000}",
+            initialDelayString = "${filmorate.storage.journal.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        for (StorageJournal journal : journals) {
+            try {
+                journal.snapshot();
+            } catch (IOException | RuntimeException e) {
+                // Журнал продолжает расти, восстановление по-прежнему возможно из предыдущего снимка
+                log.error("Не удалось записать снимок хранилища", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (StorageJournal journal : journals) {
+            journal.close();
+        }
+    }
+}
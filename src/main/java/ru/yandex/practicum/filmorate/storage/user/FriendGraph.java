@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+// Граф дружбы в памяти. Базовый слой - сжатые строки смежности (CSR): отсортированные ID пользователей,
+// смещения их списков и общий массив отсортированных ID друзей. Изменения после построения хранятся
+// в слое поверх базового как полные неизменяемые списки друзей изменённых пользователей; когда их
+// становится больше compactionThreshold, слои сливаются в новый базовый.
+// Чтение не берёт блокировок и не упаковывает ID в объекты; запись синхронизирована.
+public class FriendGraph {
+    private static final long[] NO_FRIENDS = new long[0];
+
+    private final int compactionThreshold;
+    private volatile Csr base = Csr.EMPTY;
+    private final ConcurrentHashMap<Long, long[]> overlay = new ConcurrentHashMap<>();
+
+    public FriendGraph(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    // Замена всего графа построенным заново
+    public synchronized void load(Builder builder) {
+        base = builder.build();
+        overlay.clear();
+    }
+
+    // ID друзей пользователя по возрастанию
+    public long[] friendIds(long userId) {
+        Adjacency adjacency = adjacency(userId);
+        return Arrays.copyOfRange(adjacency.ids(), adjacency.from(), adjacency.to());
+    }
+
+    // Обход друзей пользователя без копирования списка
+    public void forEachFriend(long userId, LongConsumer consumer) {
+        Adjacency adjacency = adjacency(userId);
+        for (int i = adjacency.from(); i < adjacency.to(); i++) {
+            consumer.accept(adjacency.ids()[i]);
+        }
+    }
+
+    public int degree(long userId) {
+        return adjacency(userId).size();
+    }
+
+    // ID общих друзей двух пользователей по возрастанию: слияние двух отсортированных списков
+    public long[] commonFriendIds(long userId, long otherUserId) {
+        Adjacency first = adjacency(userId);
+        Adjacency second = adjacency(otherUserId);
+        long[] result = new long[Math.min(first.size(), second.size())];
+        int count = 0;
+        int i = first.from();
+        int j = second.from();
+        while (i < first.to() && j < second.to()) {
+            long a = first.ids()[i];
+            long b = second.ids()[j];
+            if (a == b) {
+                result[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public synchronized void addFriend(long userId, long friendId) {
+        Adjacency current = adjacency(userId);
+        int position = Arrays.binarySearch(current.ids(), current.from(), current.to(), friendId);
+        if (position >= 0) {
+            return;
+        }
+        int offset = -position - 1 - current.from();
+        long[] updated = new long[current.size() + 1];
+        System.arraycopy(current.ids(), current.from(), updated, 0, offset);
+        updated[offset] = friendId;
+        System.arraycopy(current.ids(), current.from() + offset, updated, offset + 1, current.size() - offset);
+        overlay.put(userId, updated);
+        compactIfNeeded();
+    }
+
+    public synchronized void removeFriend(long userId, long friendId) {
+        Adjacency current = adjacency(userId);
+        int position = Arrays.binarySearch(current.ids(), current.from(), current.to(), friendId);
+        if (position < 0) {
+            return;
+        }
+        int offset = position - current.from();
+        long[] updated = new long[current.size() - 1];
+        System.arraycopy(current.ids(), current.from(), updated, 0, offset);
+        System.arraycopy(current.ids(), position + 1, updated, offset, current.size() - offset - 1);
+        overlay.put(userId, updated);
+        compactIfNeeded();
+    }
+
+    // Удаление пользователя: его список друзей и он сам из списков followerIds (тех, у кого он в друзьях)
+    public synchronized void removeUser(long userId, long[] followerIds) {
+        overlay.put(userId, NO_FRIENDS);
+        for (long followerId : followerIds) {
+            removeFriend(followerId, userId);
+        }
+        compactIfNeeded();
+    }
+
+    private Adjacency adjacency(long userId) {
+        long[] changed = overlay.get(userId);
+        if (changed != null) {
+            return new Adjacency(changed, 0, changed.length);
+        }
+        Csr csr = base;
+        int node = Arrays.binarySearch(csr.userIds(), userId);
+        if (node < 0) {
+            return new Adjacency(NO_FRIENDS, 0, 0);
+        }
+        return new Adjacency(csr.friendIds(), csr.offsets()[node], csr.offsets()[node + 1]);
+    }
+
+    // Слияние слоя изменений с базовым. Новый базовый слой публикуется до очистки слоя изменений,
+    // поэтому читатель в любой момент видит актуальный список.
+    private void compactIfNeeded() {
+        if (overlay.size() <= compactionThreshold) {
+            return;
+        }
+        Csr csr = base;
+        long[] changedIds = overlay.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        Builder builder = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < csr.userIds().length || j < changedIds.length) {
+            long userId;
+            if (j >= changedIds.length || (i < csr.userIds().length && csr.userIds()[i] < changedIds[j])) {
+                userId = csr.userIds()[i++];
+            } else {
+                userId = changedIds[j++];
+                if (i < csr.userIds().length && csr.userIds()[i] == userId) {
+                    i++;
+                }
+            }
+            Adjacency adjacency = adjacency(userId);
+            for (int k = adjacency.from(); k < adjacency.to(); k++) {
+                builder.add(userId, adjacency.ids()[k]);
+            }
+        }
+        base = builder.build();
+        overlay.clear();
+    }
+
+    // Построение базового слоя из рёбер, переданных в порядке (userId, friendId)
+    public static class Builder {
+        private long[] userIds = new long[16];
+        private int[] offsets = new int[17];
+        private long[] friendIds = new long[64];
+        private int userCount;
+        private int edgeCount;
+
+        public void add(long userId, long friendId) {
+            if (userCount == 0 || userIds[userCount - 1] != userId) {
+                if (userCount > 0 && userIds[userCount - 1] > userId) {
+                    throw new IllegalArgumentException("Рёбра графа дружбы должны быть упорядочены по ID пользователя.");
+                }
+                if (userCount == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, userCount * 2);
+                    offsets = Arrays.copyOf(offsets, userCount * 2 + 1);
+                }
+                userIds[userCount] = userId;
+                offsets[userCount] = edgeCount;
+                userCount++;
+            }
+            if (edgeCount == friendIds.length) {
+                friendIds = Arrays.copyOf(friendIds, edgeCount * 2);
+            }
+            friendIds[edgeCount++] = friendId;
+        }
+
+        private Csr build() {
+            int[] trimmedOffsets = Arrays.copyOf(offsets, userCount + 1);
+            trimmedOffsets[userCount] = edgeCount;
+            return new Csr(Arrays.copyOf(userIds, userCount), trimmedOffsets, Arrays.copyOf(friendIds, edgeCount));
+        }
+    }
+
+    // Список друзей пользователя u - friendIds[offsets[i], offsets[i + 1]), где userIds[i] == u
+    private record Csr(long[] userIds, int[] offsets, long[] friendIds) {
+        static final Csr EMPTY = new Csr(new long[0], new int[1], new long[0]);
+    }
+
+    private record Adjacency(long[] ids, int from, int to) {
+        int size() {
+            return to - from;
+        }
+    }
+}
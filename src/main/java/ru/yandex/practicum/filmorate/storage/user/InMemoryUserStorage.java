@@ -1,31 +1,83 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.journal.EntityCodec;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournalFactory;
+import ru.yandex.practicum.filmorate.util.StripedLocks;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+// Хранилище в памяти; выбирается настройкой filmorate.storage.type=memory.
+// Дружба направленная, как в таблице friendships: friends - кого добавил пользователь,
+// followers - обратный индекс (кто добавил пользователя), чтобы удаление стоило O(степени).
+// Изменения связей выполняются под блокировками обоих пользователей, чтения не блокируются.
+// С включённым журналом изменения под теми же блокировками сначала пишутся в него и только затем
+// применяются в памяти, как в InMemoryFilmStorage.
 @Component("inMemoryUserStorage")
+@ConditionalOnProperty(name = "filmorate.storage.type", havingValue = "memory")
 public class InMemoryUserStorage implements UserStorage {
 
-    private final Map<Long, User> users = new HashMap<>();
-    private final Map<Long, Set<Long>> friends = new HashMap<>();
-    private long nextId = 1;
+    // Типы записей журнала
+    private static final byte USER_PUT = 1;
+    private static final byte USER_REMOVE = 2;
+    private static final byte FRIEND_ADD = 3;
+    private static final byte FRIEND_REMOVE = 4;
+
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> friends = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<Long>> followers = new ConcurrentHashMap<>();
+    private final StripedLocks locks = new StripedLocks(256);
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final StorageJournalFactory journalFactory;
+    private StorageJournal journal; // null, если журнал выключен
+
+    // Хранилище без журнала
+    public InMemoryUserStorage() {
+        this.journalFactory = null;
+    }
+
+    @Autowired
+    public InMemoryUserStorage(ObjectProvider<StorageJournalFactory> journalFactory) {
+        this.journalFactory = journalFactory.getIfAvailable();
+    }
+
+    // Восстановление из снимка и журнала при старте приложения
+    @PostConstruct
+    public void openJournal() {
+        if (journalFactory != null) {
+            journal = journalFactory.open("users", new JournalTarget());
+        }
+    }
 
     @Override
     public Long createUser(User user) {
-        user.setId(nextId++);
-        users.put(user.getId(), user);
+        user.setId(nextId.getAndIncrement());
+        awaitDurable(locks.call(user.getId(), () -> journal(userRecord(user), () -> users.put(user.getId(), user))));
         return user.getId();
     }
 
     @Override
     public void updateUser(User user) {
-        if (!users.containsKey(user.getId())) {
-            throw new IllegalArgumentException("Пользователь с ID " + user.getId() + " не найден.");
-        }
-        users.put(user.getId(), user);
+        awaitDurable(locks.call(user.getId(), () -> {
+            requireUser(user.getId());
+            return journal(userRecord(user), () -> users.put(user.getId(), user));
+        }));
     }
 
     @Override
@@ -37,60 +89,267 @@ public class InMemoryUserStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public List<User> getUsersByIds(long[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<User> getAllUsers() {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public void forEachUser(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
+
+    @Override
+    public List<User> getUsersPage(Long afterId, int limit) {
+        return users.tailMap(afterId != null ? afterId : 0L, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void addFriend(Long userId, Long friendId) {
-        friends.computeIfAbsent(userId, k -> new HashSet<>()).add(friendId);
-        friends.computeIfAbsent(friendId, k -> new HashSet<>()).add(userId);
+        awaitDurable(locks.call(userId, friendId, () -> {
+            // Проверка под блокировками: связь не может появиться у пользователя, удаляемого параллельно
+            requireUser(userId);
+            requireUser(friendId);
+            if (isFriend(userId, friendId)) {
+                return 0L;
+            }
+            return journal(friendshipRecord(FRIEND_ADD, userId, friendId), () -> link(userId, friendId));
+        }));
     }
 
     @Override
     public void removeFriend(Long userId, Long friendId) {
-        friends.getOrDefault(userId, Collections.emptySet()).remove(friendId);
-        friends.getOrDefault(friendId, Collections.emptySet()).remove(userId);
+        awaitDurable(locks.call(userId, friendId, () -> {
+            requireUser(userId);
+            requireUser(friendId);
+            if (!isFriend(userId, friendId)) {
+                return 0L;
+            }
+            return journal(friendshipRecord(FRIEND_REMOVE, userId, friendId), () -> unlink(userId, friendId));
+        }));
     }
 
     @Override
     public List<User> getFriends(Long userId) {
-        // Получаем идентификаторы друзей пользователя
-        Set<Long> friendIds = friends.getOrDefault(userId, Collections.emptySet());
-
-        // Преобразуем идентификаторы в список пользователей
-        return friendIds.stream()
-                .map(this::getUserById) // Получаем пользователя по ID
+        // Идентификаторы друзей в порядке возрастания, как в хранилище на базе данных
+        return Arrays.stream(getFriendIds(userId))
+                .mapToObj(users::get)
+                .filter(Objects::nonNull) // друг мог быть удалён между чтениями
                 .collect(Collectors.toList());
     }
 
     @Override
-    public void deleteUser(Long userId) {
-        if (!users.containsKey(userId)) {
-            throw new IllegalArgumentException("Пользователь с ID " + userId + " не найден.");
-        }
-
-        // Удаляем пользователя из основного хранилища
-        users.remove(userId);
+    public long[] getFriendIds(Long userId) {
+        return friends.getOrDefault(userId, Collections.emptySet()).stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+    }
 
-        // Удаляем все записи о дружбе, связанные с этим пользователем
-        friends.remove(userId);
+    @Override
+    public long[] getFollowerIds(Long userId) {
+        return followers.getOrDefault(userId, Collections.emptySet()).stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+    }
 
-        // Удаляем пользователя из списков друзей других пользователей
-        for (Set<Long> friendList : friends.values()) {
-            friendList.remove(userId);
+    @Override
+    public void forEachFriendId(long[] userIds, LongConsumer consumer) {
+        for (long userId : userIds) {
+            friends.getOrDefault(userId, Collections.emptySet()).forEach(consumer::accept);
         }
     }
 
+    @Override
+    public void deleteUser(Long userId) {
+        // Удаляем пользователя и его собственные связи; после этого addFriend с ним не пройдёт проверку
+        Links links = locks.call(userId, () -> {
+            requireUser(userId);
+            Links detached = new Links();
+            detached.journalPosition = journal(out -> {
+                out.writeByte(USER_REMOVE);
+                out.writeLong(userId);
+            }, () -> {
+                users.remove(userId);
+                detached.detach(friends.remove(userId), followers.remove(userId));
+            });
+            return detached;
+        });
+        dropLinks(userId, links);
+        awaitDurable(links.journalPosition);
+    }
+
     @Override
     public List<User> getCommonFriends(Long userId, Long otherUserId) {
         Set<Long> userFriends = friends.getOrDefault(userId, Collections.emptySet());
         Set<Long> otherUserFriends = friends.getOrDefault(otherUserId, Collections.emptySet());
+        // Перебираем меньшее множество
+        Set<Long> smaller = userFriends.size() <= otherUserFriends.size() ? userFriends : otherUserFriends;
+        Set<Long> larger = smaller == userFriends ? otherUserFriends : userFriends;
 
-        return userFriends.stream()
-                .filter(otherUserFriends::contains)
-                .map(this::getUserById)
+        return smaller.stream()
+                .filter(larger::contains)
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    private void requireUser(Long userId) {
+        if (!users.containsKey(userId)) {
+            throw new IllegalArgumentException("Пользователь с ID " + userId + " не найден.");
+        }
+    }
+
+    private boolean isFriend(Long userId, Long friendId) {
+        return friends.getOrDefault(userId, Collections.emptySet()).contains(friendId);
+    }
+
+    private boolean link(Long userId, Long friendId) {
+        if (!friends.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(friendId)) {
+            return false;
+        }
+        followers.computeIfAbsent(friendId, k -> ConcurrentHashMap.newKeySet()).add(userId);
+        return true;
+    }
+
+    private boolean unlink(Long userId, Long friendId) {
+        if (!friends.getOrDefault(userId, Collections.emptySet()).remove(friendId)) {
+            return false;
+        }
+        followers.getOrDefault(friendId, Collections.emptySet()).remove(userId);
+        return true;
+    }
+
+    // Удаляем пользователя из обратного индекса его друзей и из списков друзей подписчиков
+    private void dropLinks(Long userId, Links links) {
+        for (Long friendId : links.friendIds) {
+            locks.run(friendId, () -> followers.getOrDefault(friendId, Collections.emptySet()).remove(userId));
+        }
+        for (Long followerId : links.followerIds) {
+            locks.run(followerId, () -> friends.getOrDefault(followerId, Collections.emptySet()).remove(userId));
+        }
+    }
+
+    private static StorageJournal.RecordWriter userRecord(User user) {
+        return out -> {
+            out.writeByte(USER_PUT);
+            EntityCodec.writeUser(out, user);
+        };
+    }
+
+    private static StorageJournal.RecordWriter friendshipRecord(byte type, Long userId, Long friendId) {
+        return out -> {
+            out.writeByte(type);
+            out.writeLong(userId);
+            out.writeLong(friendId);
+        };
+    }
+
+    // Запись изменения в журнал под блокировкой и затем его применение в памяти; 0 без журнала
+    private long journal(StorageJournal.RecordWriter writer, Runnable change) {
+        if (journal == null) {
+            change.run();
+            return 0;
+        }
+        return journal.append(writer, change);
+    }
+
+    private void awaitDurable(long position) {
+        if (journal != null && position > 0) {
+            journal.awaitDurable(position);
+        }
+    }
+
+    private static final class Links {
+        private Set<Long> friendIds = Collections.emptySet();
+        private Set<Long> followerIds = Collections.emptySet();
+        private long journalPosition;
+
+        private Links() {
+        }
+
+        private Links(Set<Long> friendIds, Set<Long> followerIds) {
+            detach(friendIds, followerIds);
+        }
+
+        private void detach(Set<Long> friendIds, Set<Long> followerIds) {
+            this.friendIds = friendIds != null ? friendIds : Collections.emptySet();
+            this.followerIds = followerIds != null ? followerIds : Collections.emptySet();
+        }
+    }
+
+    // Снимок: пользователи с ID друзей, затем счётчик ID
+    private class JournalTarget implements StorageJournal.Target {
+
+        @Override
+        public void writeSnapshot(DataOutput out) throws IOException {
+            for (User user : users.values()) {
+                out.writeBoolean(true);
+                EntityCodec.writeUser(out, user);
+                long[] friendIds = getFriendIds(user.getId());
+                out.writeInt(friendIds.length);
+                for (long friendId : friendIds) {
+                    out.writeLong(friendId);
+                }
+            }
+            out.writeBoolean(false);
+            out.writeLong(nextId.get());
+        }
+
+        @Override
+        public void readSnapshot(DataInput in) throws IOException {
+            while (in.readBoolean()) {
+                User user = EntityCodec.readUser(in);
+                users.put(user.getId(), user);
+                int friendCount = in.readInt();
+                for (int i = 0; i < friendCount; i++) {
+                    link(user.getId(), in.readLong());
+                }
+            }
+            nextId.set(in.readLong());
+            // Снимок читается без остановки записи и может содержать связь с пользователем,
+            // удалённым до начала снимка
+            friends.forEach((userId, friendIds) -> friendIds.removeIf(friendId -> !users.containsKey(friendId)));
+            followers.keySet().removeIf(userId -> !users.containsKey(userId));
+        }
+
+        @Override
+        public void apply(DataInput record) throws IOException {
+            byte type = record.readByte();
+            switch (type) {
+                case USER_PUT -> {
+                    User user = EntityCodec.readUser(record);
+                    users.put(user.getId(), user);
+                    nextId.accumulateAndGet(user.getId() + 1, Math::max);
+                }
+                case USER_REMOVE -> {
+                    // Связи снимаются, даже если самого пользователя в снимке уже нет
+                    Long userId = record.readLong();
+                    users.remove(userId);
+                    dropLinks(userId, new Links(friends.remove(userId), followers.remove(userId)));
+                }
+                case FRIEND_ADD -> {
+                    Long userId = record.readLong();
+                    Long friendId = record.readLong();
+                    if (users.containsKey(userId) && users.containsKey(friendId)) {
+                        link(userId, friendId);
+                    }
+                }
+                case FRIEND_REMOVE -> unlink(record.readLong(), record.readLong());
+                default -> throw new IOException("Неизвестный тип записи журнала пользователей: " + type);
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package ru.yandex.practicum.filmorate.storage.user;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface UserStorage {
 
@@ -12,8 +14,17 @@ public interface UserStorage {
 
     User getUserById(Long id);
 
+    // Пользователи по списку ID в порядке списка; отсутствующие ID пропускаются
+    List<User> getUsersByIds(long[] ids);
+
     List<User> getAllUsers();
 
+    // Последовательный обход всех пользователей без загрузки их в память целиком
+    void forEachUser(Consumer<User> consumer);
+
+    // Страница пользователей с ID больше afterId (null - с начала), упорядоченная по ID
+    List<User> getUsersPage(Long afterId, int limit);
+
     void addFriend(Long userId, Long friendId);
 
     void deleteUser(Long userId);
@@ -22,5 +33,14 @@ public interface UserStorage {
 
     List<User> getFriends(Long userId);
 
+    // ID друзей пользователя по возрастанию
+    long[] getFriendIds(Long userId);
+
+    // ID пользователей, у которых userId в друзьях
+    long[] getFollowerIds(Long userId);
+
+    // Обход ID друзей всех переданных пользователей (ID встречается столько раз, у скольких он в друзьях)
+    void forEachFriendId(long[] userIds, LongConsumer consumer);
+
     List<User> getCommonFriends(Long userId, Long otherUserId);
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+// Счётчики по ключам long без упаковки: открытая адресация с линейным пробированием.
+// Ключ Long.MIN_VALUE зарезервирован под пустую ячейку.
+public class LongCountMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public LongCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public void increment(long key) {
+        int slot = slot(key, keys);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+            if (size * 2 > keys.length) {
+                resize();
+                slot = slot(key, keys);
+            }
+        }
+        counts[slot]++;
+    }
+
+    public int get(long key) {
+        int slot = slot(key, keys);
+        return keys[slot] == EMPTY ? 0 : counts[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int count);
+    }
+
+    // Обход ключей с их счётчиками в произвольном порядке
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    // До n ключей с наибольшими счётчиками (при равенстве - с меньшим ключом) в порядке убывания.
+    // Отбор через min-кучу размера n: O(size * log n).
+    public long[] topKeys(int n) {
+        int limit = Math.min(n, size);
+        long[] heapKeys = new long[limit];
+        int[] heapCounts = new int[limit];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key == EMPTY) {
+                continue;
+            }
+            int count = counts[slot];
+            if (heapSize < limit) {
+                heapKeys[heapSize] = key;
+                heapCounts[heapSize] = count;
+                siftUp(heapKeys, heapCounts, heapSize++);
+            } else if (limit > 0 && ranksHigher(count, key, heapCounts[0], heapKeys[0])) {
+                heapKeys[0] = key;
+                heapCounts[0] = count;
+                siftDown(heapKeys, heapCounts, heapSize);
+            }
+        }
+        // Извлечение из min-кучи даёт порядок по возрастанию, заполняем результат с конца
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heapKeys[0];
+            heapKeys[0] = heapKeys[i];
+            heapCounts[0] = heapCounts[i];
+            siftDown(heapKeys, heapCounts, i);
+        }
+        return result;
+    }
+
+    private static boolean ranksHigher(int count, long key, int otherCount, long otherKey) {
+        return count != otherCount ? count > otherCount : key < otherKey;
+    }
+
+    private static void siftUp(long[] heapKeys, int[] heapCounts, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksHigher(heapCounts[parent], heapKeys[parent], heapCounts[index], heapKeys[index])) {
+                break;
+            }
+            swap(heapKeys, heapCounts, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heapKeys, int[] heapCounts, int heapSize) {
+        int index = 0;
+        while (true) {
+            int lowest = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < heapSize; child++) {
+                if (ranksHigher(heapCounts[lowest], heapKeys[lowest], heapCounts[child], heapKeys[child])) {
+                    lowest = child;
+                }
+            }
+            if (lowest == index) {
+                return;
+            }
+            swap(heapKeys, heapCounts, index, lowest);
+            index = lowest;
+        }
+    }
+
+    private static void swap(long[] heapKeys, int[] heapCounts, int i, int j) {
+        long key = heapKeys[i];
+        heapKeys[i] = heapKeys[j];
+        heapKeys[j] = key;
+        int count = heapCounts[i];
+        heapCounts[i] = heapCounts[j];
+        heapCounts[j] = count;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int slot(long key, long[] table) {
+        int mask = table.length - 1;
+        // Перемешивание битов, чтобы последовательные ID не образовывали длинных цепочек
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
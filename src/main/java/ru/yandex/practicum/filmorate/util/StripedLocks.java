@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Фиксированный набор блокировок, между которыми распределяются ключи: операции над разными ключами
+// почти всегда выполняются параллельно, а число объектов блокировок не зависит от числа ключей.
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public void run(long key, Runnable action) {
+        call(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T call(long key, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Блокировки двух ключей захватываются в порядке номеров полос, поэтому встречные операции
+    // (a, b) и (b, a) не могут заблокировать друг друга
+    public void run(long first, long second, Runnable action) {
+        call(first, second, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T call(long first, long second, Supplier<T> action) {
+        int a = stripe(first);
+        int b = stripe(second);
+        ReentrantLock outer = locks[Math.min(a, b)];
+        ReentrantLock inner = locks[Math.max(a, b)];
+        outer.lock();
+        try {
+            inner.lock(); // при совпадении полос повторный захват того же ReentrantLock
+            try {
+                return action.get();
+            } finally {
+                inner.unlock();
+            }
+        } finally {
+            outer.unlock();
+        }
+    }
+
+    private int stripe(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (locks.length - 1);
+    }
+}
@@ -18,6 +18,7 @@ CREATE TABLE IF NOT EXISTS films (
     release_date DATE,
     duration BIGINT,
     rating_id BIGINT,
+    likes_count BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (rating_id) REFERENCES ratings(id) ON DELETE SET NULL
 );
 
@@ -53,7 +54,14 @@ CREATE TABLE IF NOT EXISTS friendships (
 CREATE TABLE IF NOT EXISTS likes (
     film_id BIGINT NOT NULL,
     user_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (film_id, user_id),
     FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Индекс для загрузки недавних лайков при построении счётчиков трендов
+CREATE INDEX IF NOT EXISTS idx_likes_created_at ON likes (created_at);
+
+-- Поиск пользователей, у которых данный пользователь в друзьях (сброс рекомендаций, удаление пользователя)
+CREATE INDEX IF NOT EXISTS idx_friendships_friend_id ON friendships (friend_id);
\ No newline at end of file
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+import ru.yandex.practicum.filmorate.util.CompressedIntSet;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressedIntSetTests {
+
+    @Test
+    public void testAddRemoveContainsAcrossRepresentations() {
+        CompressedIntSet set = new CompressedIntSet();
+        // 10000 значений в одном блоке - битовая карта, значение из другого блока - массив
+        for (int value = 0; value < 10000; value++) {
+            assertThat(set.add(value)).isTrue();
+        }
+        assertThat(set.add(5)).isFalse();
+        assertThat(set.add(1 << 20)).isTrue();
+        assertThat(set.cardinality()).isEqualTo(10001);
+        assertThat(set.contains(9999)).isTrue();
+        assertThat(set.contains(10000)).isFalse();
+
+        // Удаление переводит блок обратно в массив
+        for (int value = 0; value < 9000; value++) {
+            assertThat(set.remove(value)).isTrue();
+        }
+        assertThat(set.remove(0)).isFalse();
+        assertThat(set.cardinality()).isEqualTo(1001);
+        assertThat(set.contains(9000)).isTrue();
+        assertThat(set.toArray()[0]).isEqualTo(9000);
+        assertThat(set.toArray()[1000]).isEqualTo(1 << 20);
+    }
+
+    @Test
+    public void testIntersectionMatchesHashSet() {
+        Random random = new Random(42);
+        CompressedIntSet first = new CompressedIntSet();
+        CompressedIntSet second = new CompressedIntSet();
+        Set<Integer> expected = new HashSet<>();
+        Set<Integer> secondValues = new HashSet<>();
+        for (int i = 0; i < 50000; i++) {
+            int value = random.nextInt(300000);
+            first.add(value);
+            expected.add(value);
+        }
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(300000);
+            second.add(value);
+            secondValues.add(value);
+        }
+        expected.retainAll(secondValues);
+
+        CompressedIntSet intersection = first.and(second);
+        assertThat(intersection.cardinality()).isEqualTo(expected.size());
+        assertThat(first.andCardinality(second)).isEqualTo(expected.size());
+        for (int value : intersection.toArray()) {
+            assertThat(expected).contains(value);
+        }
+    }
+
+    @Test
+    public void testLikeStoreKeepsInverseIndex() {
+        LikeStore store = new LikeStore();
+        assertThat(store.add(1, 10)).isTrue();
+        assertThat(store.add(1, 10)).isFalse();
+        store.add(1, 11);
+        store.add(2, 10);
+        store.add(2, 11);
+        store.add(2, 12);
+
+        assertThat(store.likeCount(2)).isEqualTo(3);
+        assertThat(store.commonLikeCount(1, 2)).isEqualTo(2);
+        assertThat(store.filmsOf(10).toArray()).containsExactly(1, 2);
+
+        store.removeFilm(1);
+        assertThat(store.filmsOf(10).toArray()).containsExactly(2);
+        assertThat(store.remove(2, 12)).isTrue();
+        assertThat(store.contains(2, 12)).isFalse();
+        assertThat(store.filmsOf(12).isEmpty()).isTrue();
+    }
+}
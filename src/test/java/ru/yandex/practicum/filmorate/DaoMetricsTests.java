@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.dao.film.FilmDao;
+import ru.yandex.practicum.filmorate.dao.genre.GenreDao;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class DaoMetricsTests {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FilmDao filmDao;
+
+    @Autowired
+    private GenreDao genreDao;
+
+    @Test
+    public void testDaoCallsAreTimedWithRowCounts() {
+        long before = successCount("GenreDao", "getAllGenres");
+        int genres = genreDao.getAllGenres().size();
+
+        assertThat(successCount("GenreDao", "getAllGenres")).isEqualTo(before + 1);
+        DistributionSummary rows = meterRegistry.find("filmorate.dao.rows")
+                .tags("dao", "GenreDao", "method", "getAllGenres")
+                .summary();
+        assertThat(rows).isNotNull();
+        assertThat(rows.max()).isGreaterThanOrEqualTo(genres);
+    }
+
+    @Test
+    public void testDaoErrorsAreCountedByException() {
+        assertThatThrownBy(() -> filmDao.getFilmById(Long.MAX_VALUE)).isInstanceOf(FilmNotFoundException.class);
+
+        Timer errors = meterRegistry.find("filmorate.dao.calls")
+                .tags("dao", "FilmDao", "method", "getFilmById", "outcome", "error",
+                        "exception", "FilmNotFoundException")
+                .timer();
+        assertThat(errors).isNotNull();
+        assertThat(errors.count()).isGreaterThanOrEqualTo(1);
+    }
+
+    private long successCount(String dao, String method) {
+        Timer timer = meterRegistry.find("filmorate.dao.calls")
+                .tags("dao", dao, "method", method, "outcome", "success")
+                .timer();
+        return timer != null ? timer.count() : 0;
+    }
+}
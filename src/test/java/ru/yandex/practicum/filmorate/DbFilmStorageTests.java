@@ -1,17 +1,35 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
 import ru.yandex.practicum.filmorate.dao.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.dao.film.FilmDao;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FeedEntry;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.SimilarFilmsService;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest
 @ActiveProfiles("test") // Активируем профиль "test"
@@ -20,9 +38,30 @@ public class DbFilmStorageTests {
     @Autowired
     private DbFilmStorage dbFilmStorage;
 
+    @Autowired
+    private ReferenceDictionary referenceDictionary;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private SimilarFilmsService similarFilmsService;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private UserStorage userStorage;
+
     @BeforeEach
     void setUp() {
         // Отключаем проверку внешних ключей
@@ -38,6 +77,10 @@ public class DbFilmStorageTests {
 
         // Включаем проверку внешних ключей
         jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+
+        // Таблицы очищены в обход хранилища - перечитываем справочники и перестраиваем индексы
+        referenceDictionary.reload();
+        dbFilmStorage.rebuildIndexes();
     }
 
     @Test
@@ -122,4 +165,349 @@ public class DbFilmStorageTests {
         List<Film> films = dbFilmStorage.getAllFilms();
         assertThat(films).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetMostPopularFilmsOrderedByLikesCount() {
+        Long filmId1 = dbFilmStorage.createFilm(createFilm("Film 1"));
+        Long filmId2 = dbFilmStorage.createFilm(createFilm("Film 2"));
+        Long userId1 = createUser("user1");
+        Long userId2 = createUser("user2");
+
+        dbFilmStorage.addLike(filmId2, userId1);
+        dbFilmStorage.addLike(filmId2, userId2);
+        dbFilmStorage.addLike(filmId1, userId1);
+
+        List<Film> popular = dbFilmStorage.getMostPopularFilms(10);
+        assertThat(popular.stream().map(Film::getId)).containsExactly(filmId2, filmId1);
+
+        dbFilmStorage.removeLike(filmId2, userId1);
+        dbFilmStorage.removeLike(filmId2, userId2);
+
+        popular = dbFilmStorage.getMostPopularFilms(1);
+        assertThat(popular.stream().map(Film::getId)).containsExactly(filmId1);
+    }
+
+    @Test
+    public void testDuplicateLikeIsNoOpAndMissingFilmReported() {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Film"));
+        Long userId = createUser("user");
+
+        dbFilmStorage.addLike(filmId, userId);
+        dbFilmStorage.addLike(filmId, userId);
+
+        Long likesCount = jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?", Long.class, filmId);
+        assertThat(likesCount).isEqualTo(1L);
+        assertThatThrownBy(() -> dbFilmStorage.addLike(999L, userId)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> dbFilmStorage.addLike(filmId, 999L)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    public void testReconcileLikeCounters() {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Film"));
+        Long userId = createUser("user");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+
+        int updated = dbFilmStorage.filmDao.reconcileLikeCounters();
+
+        assertThat(updated).isEqualTo(1);
+        Long likesCount = jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?", Long.class,
+                filmId);
+        assertThat(likesCount).isEqualTo(1L);
+    }
+
+    @Test
+    public void testGetTrendingFilms() {
+        Long filmId1 = dbFilmStorage.createFilm(createFilm("Film 1"));
+        Long filmId2 = dbFilmStorage.createFilm(createFilm("Film 2"));
+        dbFilmStorage.createFilm(createFilm("Film without likes"));
+        Long userId1 = createUser("user1");
+        Long userId2 = createUser("user2");
+
+        dbFilmStorage.addLike(filmId1, userId1);
+        dbFilmStorage.addLike(filmId2, userId1);
+        dbFilmStorage.addLike(filmId2, userId2);
+
+        List<Film> trending = dbFilmStorage.getTrendingFilms(Duration.ofHours(24), 10);
+        assertThat(trending.stream().map(Film::getId)).containsExactly(filmId2, filmId1);
+    }
+
+    @Test
+    public void testTrendingWindowLongerThanIndexRejected() {
+        // По умолчанию индекс хранит 168 часовых корзин, то есть ровно 7 дней
+        assertThat(dbFilmStorage.getMaxTrendingWindow()).isEqualTo(Duration.ofDays(7));
+        assertThat(filmService.getTrendingFilms("7d", 10)).isEmpty();
+        assertThatThrownBy(() -> filmService.getTrendingFilms("8d", 10))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> filmService.getTrendingFilms("169h", 10))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void testGetFilmByIdServedFromCacheUntilUpdate() {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Cached"));
+
+        Film first = dbFilmStorage.getFilmById(filmId);
+        double hits = cacheRequests("hit");
+        double misses = cacheRequests("miss");
+        // Кэш отдаёт копии: повторное чтение - равный фильм и попадание в кэш без обращения к базе данных
+        assertThat(dbFilmStorage.getFilmById(filmId)).isEqualTo(first);
+        assertThat(cacheRequests("hit")).isEqualTo(hits + 1);
+        assertThat(cacheRequests("miss")).isEqualTo(misses);
+
+        Film updatedFilm = createFilm("Updated");
+        updatedFilm.setId(filmId);
+        dbFilmStorage.updateFilm(updatedFilm);
+
+        Film afterUpdate = dbFilmStorage.getFilmById(filmId);
+        assertThat(afterUpdate).isNotSameAs(first);
+        assertThat(afterUpdate.getName()).isEqualTo("Updated");
+    }
+
+    @Test
+    public void testFilmReferencesResolvedFromDictionary() {
+        jdbcTemplate.update("INSERT INTO ratings (id, name) VALUES (1, 'G')");
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия'), (2, 'Драма')");
+        referenceDictionary.reload();
+
+        Film film = createFilm("With genres");
+        film.setMpa(new Rating(1L, null));
+        film.setGenres(List.of(new Genre(2L, null), new Genre(1L, null)));
+        Long filmId = dbFilmStorage.createFilm(film);
+
+        Film fetchedFilm = dbFilmStorage.getFilmById(filmId);
+        assertThat(fetchedFilm.getMpa()).isSameAs(referenceDictionary.getRating(1L));
+        assertThat(fetchedFilm.getGenres()).containsExactly(new Genre(1L, "Комедия"), new Genre(2L, "Драма"));
+        assertThat(fetchedFilm.getGenres().get(0)).isSameAs(referenceDictionary.getGenre(1L));
+    }
+
+    @Test
+    public void testGenresWithCommaInNameHydratedByDao() {
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия, мелодрама'), (2, 'Драма'), "
+                + "(3, 'Ужасы, триллер, мистика')");
+        referenceDictionary.reload();
+        FilmDao filmDao = dbFilmStorage.filmDao;
+
+        Film first = createFilm("First", 3L, 1L);
+        Long firstId = filmDao.createFilm(first);
+        Long secondId = filmDao.createFilm(createFilm("Second"));
+        Long thirdId = filmDao.createFilm(createFilm("Third", 2L, 3L));
+
+        // Жанры возвращаются по возрастанию ID, названия с запятыми - без искажений
+        List<Genre> firstGenres = List.of(new Genre(1L, "Комедия, мелодрама"),
+                new Genre(3L, "Ужасы, триллер, мистика"));
+        assertThat(filmDao.getFilmById(firstId).getGenres()).containsExactlyElementsOf(firstGenres);
+        assertThat(filmDao.getAllFilms())
+                .extracting(Film::getId, Film::getGenres)
+                .containsExactly(tuple(firstId, firstGenres), tuple(secondId, List.of()),
+                        tuple(thirdId, List.of(new Genre(2L, "Драма"), new Genre(3L, "Ужасы, триллер, мистика"))));
+        assertThat(filmDao.getFilmsPage(firstId, 1))
+                .extracting(Film::getId, Film::getGenres)
+                .containsExactly(tuple(secondId, List.of()));
+        assertThat(filmDao.getFilmsPage(secondId, 10))
+                .extracting(Film::getId, Film::getGenres)
+                .containsExactly(tuple(thirdId, List.of(new Genre(2L, "Драма"),
+                        new Genre(3L, "Ужасы, триллер, мистика"))));
+    }
+
+    @Test
+    public void testCreateFilmWithUnknownGenreRejected() {
+        Film film = createFilm("Unknown genre");
+        film.setGenres(List.of(new Genre(99L, null)));
+
+        assertThatThrownBy(() -> dbFilmStorage.createFilm(film)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testCreateFilmsInBatch() {
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия'), (2, 'Драма')");
+        referenceDictionary.reload();
+
+        Film first = createFilm("First");
+        first.setGenres(List.of(new Genre(1L, null), new Genre(2L, null), new Genre(1L, null)));
+        Film second = createFilm("Second");
+
+        List<Long> filmIds = dbFilmStorage.createFilms(List.of(first, second));
+
+        assertThat(filmIds).hasSize(2);
+        assertThat(dbFilmStorage.getFilmById(filmIds.get(0)).getGenres()).extracting(Genre::getId).containsExactly(1L, 2L);
+        assertThat(dbFilmStorage.getFilmById(filmIds.get(1)).getName()).isEqualTo("Second");
+    }
+
+    @Test
+    public void testUpdateFilmAppliesGenreDifference() {
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия'), (2, 'Драма'), (3, 'Мультфильм')");
+        referenceDictionary.reload();
+
+        Film film = createFilm("Film");
+        film.setGenres(List.of(new Genre(1L, null), new Genre(2L, null)));
+        Long filmId = dbFilmStorage.createFilm(film);
+
+        Film updatedFilm = createFilm("Film");
+        updatedFilm.setId(filmId);
+        updatedFilm.setGenres(List.of(new Genre(3L, null), new Genre(2L, null)));
+        dbFilmStorage.updateFilm(updatedFilm);
+
+        assertThat(dbFilmStorage.getFilmById(filmId).getGenres()).extracting(Genre::getId).containsExactly(2L, 3L);
+    }
+
+    @Test
+    public void testGetFilmsByIdsPreservesOrderAndSkipsMissing() {
+        Long filmId1 = dbFilmStorage.createFilm(createFilm("Film 1"));
+        Long filmId2 = dbFilmStorage.createFilm(createFilm("Film 2"));
+        dbFilmStorage.getFilmById(filmId1); // первый фильм окажется в кэше, второй будет загружен из базы
+
+        List<Film> films = dbFilmStorage.getFilmsByIds(List.of(filmId2, 999L, filmId1));
+        assertThat(films).extracting(Film::getId).containsExactly(filmId2, filmId1);
+    }
+
+    @Test
+    public void testRecommendationsFromLikeCoOccurrence() {
+        Long filmA = dbFilmStorage.createFilm(createFilm("A"));
+        Long filmB = dbFilmStorage.createFilm(createFilm("B"));
+        Long filmC = dbFilmStorage.createFilm(createFilm("C"));
+        Long filmD = dbFilmStorage.createFilm(createFilm("D"));
+        Long user1 = createUser("user1");
+        Long user2 = createUser("user2");
+        Long user3 = createUser("user3");
+        Long target = createUser("target");
+        dbFilmStorage.addLike(filmA, user1);
+        dbFilmStorage.addLike(filmB, user1);
+        dbFilmStorage.addLike(filmA, user2);
+        dbFilmStorage.addLike(filmB, user2);
+        dbFilmStorage.addLike(filmC, user2);
+        recommendationService.rebuildIndex();
+
+        // Лайки применяются к индексу инкрементально через общее хранилище лайков
+        filmService.addLike(filmC, user3);
+        filmService.addLike(filmD, user3);
+        filmService.addLike(filmA, target);
+        recommendationService.refreshIndex();
+
+        // B встречается с A у двух пользователей, C - у одного, D с A не встречается
+        assertThat(recommendationService.getRecommendations(target, 10))
+                .extracting(Film::getId)
+                .containsExactly(filmB, filmC);
+
+        filmService.addLike(filmB, target);
+        recommendationService.refreshIndex();
+        assertThat(recommendationService.getRecommendations(target, 10))
+                .extracting(Film::getId)
+                .containsExactly(filmC);
+
+        // Удалённый фильм не рекомендуется и до пересчёта соседей, в списках которых он остался
+        dbFilmStorage.removeFilm(filmC);
+        assertThat(recommendationService.getRecommendations(target, 10)).isEmpty();
+    }
+
+    @Test
+    public void testSimilarFilmsByGenresAndAudience() {
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия'), (2, 'Драма'), (3, 'Мультфильм')");
+        referenceDictionary.reload();
+        similarFilmsService.rebuildIndex();
+
+        Film filmA = filmService.addFilm(createFilm("A", 1L, 2L));
+        Film filmB = filmService.addFilm(createFilm("B", 1L, 2L));
+        Film filmC = filmService.addFilm(createFilm("C", 3L));
+        Film filmD = filmService.addFilm(createFilm("D", 3L));
+        Long user1 = createUser("user1");
+        Long user2 = createUser("user2");
+        for (Long userId : List.of(user1, user2)) {
+            filmService.addLike(filmA.getId(), userId);
+            filmService.addLike(filmC.getId(), userId);
+        }
+
+        // C совпадает с A по аудитории (вес 0.7), B - по жанрам (вес 0.3), у D общего с A нет
+        assertThat(filmService.getSimilarFilms(filmA.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(filmC.getId(), filmB.getId());
+        assertThat(filmService.getSimilarFilms(filmA.getId(), 1))
+                .extracting(Film::getId)
+                .containsExactly(filmC.getId());
+
+        // Смена жанров и снятие лайков сразу отражаются в индексе
+        Film updatedB = createFilm("B", 3L);
+        updatedB.setId(filmB.getId());
+        filmService.updateFilm(updatedB);
+        assertThat(filmService.getSimilarFilms(filmA.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(filmC.getId());
+        filmService.removeLike(filmC.getId(), user1);
+        filmService.removeLike(filmC.getId(), user2);
+        assertThat(filmService.getSimilarFilms(filmA.getId(), 10)).isEmpty();
+
+        // После перестроения из хранилища: у A и D одна и та же аудитория
+        filmService.removeLike(filmA.getId(), user2);
+        filmService.addLike(filmD.getId(), user1);
+        similarFilmsService.rebuildIndex();
+        assertThat(filmService.getSimilarFilms(filmA.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(filmD.getId());
+
+        assertThatThrownBy(() -> filmService.getSimilarFilms(filmA.getId(), 0))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void testFeedMergesFriendsLikesNewestFirst() throws InterruptedException {
+        Long filmA = dbFilmStorage.createFilm(createFilm("A"));
+        Long filmB = dbFilmStorage.createFilm(createFilm("B"));
+        Long filmC = dbFilmStorage.createFilm(createFilm("C"));
+        Long filmD = dbFilmStorage.createFilm(createFilm("D"));
+        Long reader = createUser("reader");
+        Long friend1 = createUser("friend1");
+        Long friend2 = createUser("friend2");
+        Long stranger = createUser("stranger");
+        userStorage.addFriend(reader, friend1);
+        userStorage.addFriend(reader, friend2);
+
+        // Лайки с заметным промежутком, чтобы порядок по времени был однозначным
+        for (Long[] like : new Long[][]{{filmA, friend1}, {filmB, friend2}, {filmA, friend2}, {filmD, stranger},
+                {filmC, friend1}}) {
+            dbFilmStorage.addLike(like[0], like[1]);
+            Thread.sleep(5);
+        }
+
+        // Фильм A лайкнули оба друга - в ленте он один раз, по более новому лайку
+        assertThat(feedService.getFeed(reader, 10))
+                .extracting(entry -> entry.getFilm().getId(), FeedEntry::getUserId)
+                .containsExactly(tuple(filmC, friend1), tuple(filmA, friend2), tuple(filmB, friend2));
+        assertThat(feedService.getFeed(reader, 2)).extracting(entry -> entry.getFilm().getId())
+                .containsExactly(filmC, filmA);
+
+        // Снятый лайк и удалённый фильм из ленты пропадают; после перестроения из базы порядок тот же
+        dbFilmStorage.removeLike(filmA, friend2);
+        dbFilmStorage.removeFilm(filmC);
+        dbFilmStorage.rebuildRecentLikes();
+        assertThat(feedService.getFeed(reader, 10))
+                .extracting(entry -> entry.getFilm().getId(), FeedEntry::getUserId)
+                .containsExactly(tuple(filmB, friend2), tuple(filmA, friend1));
+
+        assertThatThrownBy(() -> feedService.getFeed(reader, 0)).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> feedService.getFeed(999L, 10)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    private double cacheRequests(String result) {
+        return meterRegistry.get("filmorate.film.cache.requests").tag("result", result).functionCounter().count();
+    }
+
+    private Film createFilm(String name, Long... genreIds) {
+        Film film = createFilm(name);
+        film.setGenres(Arrays.stream(genreIds).map(id -> new Genre(id, null)).toList());
+        return film;
+    }
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(100L);
+        return film;
+    }
+
+    private Long createUser(String login) {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                login + "@example.com", login, login, LocalDate.of(1990, 1, 1));
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = ?", Long.class, login);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.dao.user.DbUserStorage;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Друзья и общие друзья из графа дружбы в памяти (filmorate.friends.graph.enabled=true)
+@SpringBootTest(properties = "filmorate.friends.graph.enabled=true")
+@ActiveProfiles("test")
+public class DbUserStorageFriendGraphTests {
+
+    @Autowired
+    private DbUserStorage dbUserStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.execute("TRUNCATE TABLE friendships");
+        jdbcTemplate.execute("TRUNCATE TABLE likes");
+        jdbcTemplate.execute("TRUNCATE TABLE users");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        dbUserStorage.rebuildFriendGraph();
+    }
+
+    @Test
+    public void testFriendsLoadedIntoGraph() {
+        Long userId = createUser("user");
+        Long friendId1 = createUser("friend1");
+        Long friendId2 = createUser("friend2");
+        insertFriendship(userId, friendId2);
+        insertFriendship(userId, friendId1);
+        dbUserStorage.rebuildFriendGraph();
+
+        assertThat(dbUserStorage.getFriends(userId)).extracting(User::getId).containsExactly(friendId1, friendId2);
+        assertThat(dbUserStorage.getFriends(userId).get(0).getLogin()).isEqualTo("friend1");
+
+        // Строки, добавленные в обход хранилища, в граф не попадают - ответ действительно строится по графу
+        insertFriendship(friendId1, friendId2);
+        assertThat(dbUserStorage.getFriends(friendId1)).isEmpty();
+    }
+
+    @Test
+    public void testCommonFriendsFromGraph() {
+        Long userId = createUser("user");
+        Long otherId = createUser("other");
+        Long sharedId = createUser("shared");
+        Long onlyUserFriendId = createUser("only");
+        dbUserStorage.addFriend(userId, sharedId);
+        dbUserStorage.addFriend(userId, onlyUserFriendId);
+        dbUserStorage.addFriend(otherId, sharedId);
+
+        assertThat(dbUserStorage.getCommonFriends(userId, otherId)).extracting(User::getId).containsExactly(sharedId);
+        assertThat(dbUserStorage.getCommonFriends(userId, onlyUserFriendId)).isEmpty();
+        assertThatThrownBy(() -> dbUserStorage.getCommonFriends(userId, 999L))
+                .isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    public void testGraphUpdatedOnFriendAddAndRemove() {
+        Long userId = createUser("user");
+        Long otherId = createUser("other");
+        Long friendId = createUser("friend");
+
+        dbUserStorage.addFriend(userId, friendId);
+        dbUserStorage.addFriend(otherId, friendId);
+        assertThat(dbUserStorage.getFriends(userId)).extracting(User::getId).containsExactly(friendId);
+        assertThat(dbUserStorage.getCommonFriends(userId, otherId)).extracting(User::getId).containsExactly(friendId);
+
+        dbUserStorage.removeFriend(userId, friendId);
+        assertThat(dbUserStorage.getFriends(userId)).isEmpty();
+        assertThat(dbUserStorage.getCommonFriends(userId, otherId)).isEmpty();
+        assertThat(dbUserStorage.getFriends(otherId)).extracting(User::getId).containsExactly(friendId);
+
+        // Удалённый пользователь пропадает из списков друзей тех, кто его добавил
+        dbUserStorage.deleteUser(friendId);
+        assertThat(dbUserStorage.getFriends(otherId)).isEmpty();
+        assertThatThrownBy(() -> dbUserStorage.getFriends(friendId)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    public void testConcurrentAddAndRemoveKeepGraphInSyncWithTable() throws Exception {
+        Long userId = createUser("user");
+        Long friendId = createUser("friend");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                boolean add = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    if (add) {
+                        dbUserStorage.addFriend(userId, friendId);
+                    } else {
+                        dbUserStorage.removeFriend(userId, friendId);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Граф пришёл в то же состояние, что и таблица, каким бы ни был порядок операций
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM friendships WHERE user_id = ? AND friend_id = ?", Integer.class,
+                userId, friendId);
+        assertThat(dbUserStorage.getFriendIds(userId)).hasSize(rows);
+    }
+
+    private void insertFriendship(Long userId, Long friendId) {
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED')",
+                userId, friendId);
+    }
+
+    private Long createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return dbUserStorage.createUser(user);
+    }
+}
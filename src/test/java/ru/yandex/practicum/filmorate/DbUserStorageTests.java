@@ -6,12 +6,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import ru.yandex.practicum.filmorate.dao.user.DbUserStorage;
+import ru.yandex.practicum.filmorate.dao.user.UserDao;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
 
 import java.time.LocalDate;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @ActiveProfiles("test") // Активируем профиль "test"
@@ -20,6 +24,12 @@ public class DbUserStorageTests {
     @Autowired
     private DbUserStorage dbUserStorage;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDao userDao;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
@@ -116,6 +126,30 @@ public class DbUserStorageTests {
         assertThat(friendsOfUser1).isEmpty();
     }
 
+    @Test
+    public void testAddFriendIsIdempotentAndChecksUsers() {
+        User user = new User();
+        user.setEmail("user@example.com");
+        user.setLogin("userLogin");
+        user.setName("User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User friend = new User();
+        friend.setEmail("friend@example.com");
+        friend.setLogin("friendLogin");
+        friend.setName("Friend");
+        friend.setBirthday(LocalDate.of(1991, 1, 1));
+
+        Long userId = dbUserStorage.createUser(user);
+        Long friendId = dbUserStorage.createUser(friend);
+
+        dbUserStorage.addFriend(userId, friendId);
+        dbUserStorage.addFriend(userId, friendId);
+        assertThat(dbUserStorage.getFriends(userId)).hasSize(1);
+
+        assertThatThrownBy(() -> dbUserStorage.addFriend(userId, 999L)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> dbUserStorage.removeFriend(999L, friendId)).isInstanceOf(UserNotFoundException.class);
+    }
+
     @Test
     public void testGetCommonFriends() {
         User user1 = new User();
@@ -148,4 +182,109 @@ public class DbUserStorageTests {
         assertThat(commonFriends).hasSize(1);
         assertThat(commonFriends.get(0).getId()).isEqualTo(userId3);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCommonFriendsJoinReturnsIntersection() {
+        Long userId = dbUserStorage.createUser(createUser("common1", LocalDate.of(1990, 1, 1)));
+        Long otherId = dbUserStorage.createUser(createUser("common2", LocalDate.of(1991, 2, 2)));
+        Long sharedId1 = dbUserStorage.createUser(createUser("shared1", LocalDate.of(1992, 3, 3)));
+        Long sharedId2 = dbUserStorage.createUser(createUser("shared2", LocalDate.of(1993, 4, 4)));
+        Long onlyUserFriendId = dbUserStorage.createUser(createUser("only1", LocalDate.of(1994, 5, 5)));
+        Long pendingId = dbUserStorage.createUser(createUser("pending", LocalDate.of(1995, 6, 6)));
+        userDao.addFriend(userId, sharedId2);
+        userDao.addFriend(userId, sharedId1);
+        userDao.addFriend(userId, onlyUserFriendId);
+        userDao.addFriend(userId, pendingId);
+        userDao.addFriend(otherId, sharedId1);
+        userDao.addFriend(otherId, sharedId2);
+        // Неподтверждённая дружба не учитывается
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'PENDING')",
+                otherId, pendingId);
+
+        List<User> commonFriends = userDao.getCommonFriends(userId, otherId);
+
+        assertThat(commonFriends).extracting(User::getId).containsExactly(sharedId1, sharedId2);
+        User shared = commonFriends.get(0);
+        assertThat(shared.getEmail()).isEqualTo("shared1@example.com");
+        assertThat(shared.getLogin()).isEqualTo("shared1");
+        assertThat(shared.getName()).isEqualTo("User shared1");
+        assertThat(shared.getBirthday()).isEqualTo(LocalDate.of(1992, 3, 3));
+    }
+
+    @Test
+    public void testCommonFriendsJoinWithoutIntersectionIsEmpty() {
+        Long userId = dbUserStorage.createUser(createUser("lonely1", LocalDate.of(1990, 1, 1)));
+        Long otherId = dbUserStorage.createUser(createUser("lonely2", LocalDate.of(1990, 1, 1)));
+        Long friendId = dbUserStorage.createUser(createUser("friend", LocalDate.of(1990, 1, 1)));
+        userDao.addFriend(userId, friendId);
+
+        assertThat(userDao.getCommonFriends(userId, otherId)).isEmpty();
+        assertThat(userDao.getCommonFriends(userId, userId)).extracting(User::getId).containsExactly(friendId);
+    }
+
+    @Test
+    public void testCommonFriendsOfUnknownUserThrows() {
+        Long userId = dbUserStorage.createUser(createUser("known", LocalDate.of(1990, 1, 1)));
+
+        assertThatThrownBy(() -> userDao.getCommonFriends(userId, 999L)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> userDao.getCommonFriends(999L, userId)).isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    public void testGetUsersPage() {
+        Long[] ids = new Long[5];
+        for (int i = 0; i < ids.length; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            ids[i] = dbUserStorage.createUser(user);
+        }
+
+        List<User> firstPage = dbUserStorage.getUsersPage(null, 2);
+        assertThat(firstPage.stream().map(User::getId)).containsExactly(ids[0], ids[1]);
+
+        List<User> secondPage = dbUserStorage.getUsersPage(ids[1], 2);
+        assertThat(secondPage.stream().map(User::getId)).containsExactly(ids[2], ids[3]);
+
+        List<User> lastPage = dbUserStorage.getUsersPage(ids[3], 2);
+        assertThat(lastPage.stream().map(User::getId)).containsExactly(ids[4]);
+    }
+
+    @Test
+    public void testGetFriendSuggestionsRankedByMutualFriends() {
+        Long[] ids = new Long[5];
+        for (int i = 0; i < ids.length; i++) {
+            User user = new User();
+            user.setEmail("suggest" + i + "@example.com");
+            user.setLogin("suggest" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            ids[i] = dbUserStorage.createUser(user);
+        }
+        // У ids[0] друзья ids[1] и ids[2]; ids[3] - друг обоих, ids[4] - только ids[1]
+        userService.addFriend(ids[0], ids[1]);
+        userService.addFriend(ids[0], ids[2]);
+        userService.addFriend(ids[1], ids[3]);
+        userService.addFriend(ids[2], ids[3]);
+        userService.addFriend(ids[1], ids[4]);
+        userService.addFriend(ids[1], ids[0]);
+
+        List<User> suggestions = userService.getFriendSuggestions(ids[0], 10);
+        assertThat(suggestions).extracting(User::getId).containsExactly(ids[3], ids[4]);
+
+        userService.addFriend(ids[0], ids[3]);
+        suggestions = userService.getFriendSuggestions(ids[0], 10);
+        assertThat(suggestions).extracting(User::getId).containsExactly(ids[4]);
+    }
+
+    private static User createUser(String login, LocalDate birthday) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName("User " + login);
+        user.setBirthday(birthday);
+        return user;
+    }
+}
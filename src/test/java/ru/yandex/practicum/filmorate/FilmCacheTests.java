@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.dao.film.FilmDao;
+import ru.yandex.practicum.filmorate.dao.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FilmCacheTests {
+
+    @Test
+    public void testUpdateDuringReadMissIsNotOverwrittenByStaleFilm() throws Exception {
+        StubFilmDao filmDao = new StubFilmDao();
+        filmDao.films.put(1L, createFilm(1L, "Old name"));
+        DbFilmStorage storage = createStorage(filmDao);
+        filmDao.pauseReads = true;
+
+        // Чтение при промахе получает фильм из базы и останавливается до записи в кэш
+        AtomicReference<Film> read = new AtomicReference<>();
+        Thread reader = new Thread(() -> read.set(storage.getFilmById(1L)));
+        reader.start();
+        assertThat(filmDao.readDone.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Обновление завершается, пока чтение ещё не положило фильм в кэш
+        storage.updateFilm(createFilm(1L, "New name"));
+        filmDao.pauseReads = false;
+        filmDao.proceed.countDown();
+        reader.join(5000);
+
+        assertThat(read.get().getName()).isEqualTo("Old name");
+        assertThat(storage.getFilmById(1L).getName()).isEqualTo("New name");
+        assertThat(storage.getFilmsByIds(List.of(1L))).extracting(Film::getName).containsExactly("New name");
+    }
+
+    @Test
+    public void testUpdateDuringMultiGetMissIsNotOverwrittenByStaleFilm() throws Exception {
+        StubFilmDao filmDao = new StubFilmDao();
+        filmDao.films.put(1L, createFilm(1L, "Old name"));
+        filmDao.films.put(2L, createFilm(2L, "Other"));
+        DbFilmStorage storage = createStorage(filmDao);
+        filmDao.pauseReads = true;
+
+        Thread reader = new Thread(() -> storage.getFilmsByIds(List.of(1L, 2L)));
+        reader.start();
+        assertThat(filmDao.readDone.await(5, TimeUnit.SECONDS)).isTrue();
+
+        storage.updateFilm(createFilm(1L, "New name"));
+        filmDao.pauseReads = false;
+        filmDao.proceed.countDown();
+        reader.join(5000);
+
+        assertThat(storage.getFilmsByIds(List.of(1L, 2L))).extracting(Film::getName)
+                .containsExactly("New name", "Other");
+    }
+
+    @Test
+    public void testChangingReturnedFilmDoesNotChangeCache() {
+        StubFilmDao filmDao = new StubFilmDao();
+        Film stored = createFilm(1L, "Name");
+        stored.setGenres(new ArrayList<>(List.of(new Genre(1L, "Комедия"))));
+        filmDao.films.put(1L, stored);
+        DbFilmStorage storage = createStorage(filmDao);
+
+        Film loaded = storage.getFilmById(1L);
+        loaded.setName("Changed");
+        loaded.getGenres().clear();
+        Film cached = storage.getFilmById(1L);
+        cached.setDuration(1L);
+
+        Film film = storage.getFilmsByIds(List.of(1L)).get(0);
+        assertThat(filmDao.reads).isEqualTo(1);
+        assertThat(film.getName()).isEqualTo("Name");
+        assertThat(film.getGenres()).containsExactly(new Genre(1L, "Комедия"));
+        assertThat(film.getDuration()).isEqualTo(100L);
+    }
+
+    private static DbFilmStorage createStorage(FilmDao filmDao) {
+        return new DbFilmStorage(filmDao, new SimpleMeterRegistry(),
+                new DefaultListableBeanFactory().getBeanProvider(LikeWriteBuffer.class), new LikeStore(),
+                60, 24, 0, 100, 0, 50, 30);
+    }
+
+    private static Film createFilm(Long id, String name) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(100L);
+        return film;
+    }
+
+    // Фильмы хранятся в памяти; при pauseReads чтение останавливается после получения данных до сигнала proceed
+    private static class StubFilmDao extends FilmDao {
+        private final Map<Long, Film> films = new ConcurrentHashMap<>();
+        private final CountDownLatch readDone = new CountDownLatch(1);
+        private final CountDownLatch proceed = new CountDownLatch(1);
+        private volatile boolean pauseReads;
+        private volatile int reads;
+
+        private StubFilmDao() {
+            super(null, null);
+        }
+
+        @Override
+        public Film getFilmById(Long filmId) {
+            Film film = copyOf(films.get(filmId));
+            pause();
+            return film;
+        }
+
+        @Override
+        public List<Film> getFilmsByIds(List<Long> ids) {
+            List<Film> result = ids.stream().filter(films::containsKey).map(id -> copyOf(films.get(id))).toList();
+            pause();
+            return result;
+        }
+
+        @Override
+        public void updateFilm(Film film) {
+            films.put(film.getId(), copyOf(film));
+        }
+
+        private void pause() {
+            reads++;
+            if (pauseReads) {
+                readDone.countDown();
+                try {
+                    proceed.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private static Film copyOf(Film film) {
+            return new Film(film.getMpa(), film.getGenres() != null ? new ArrayList<>(film.getGenres()) : null,
+                    film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class FilmControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DbFilmStorage dbFilmStorage;
+
+    @Autowired
+    private ReferenceDictionary referenceDictionary;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.execute("TRUNCATE TABLE likes");
+        jdbcTemplate.execute("TRUNCATE TABLE film_genres");
+        jdbcTemplate.execute("TRUNCATE TABLE films");
+        jdbcTemplate.execute("TRUNCATE TABLE genres");
+        jdbcTemplate.execute("TRUNCATE TABLE ratings");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        jdbcTemplate.update("INSERT INTO ratings (id, name) VALUES (1, 'G')");
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия'), (2, 'Драма')");
+        referenceDictionary.reload();
+        dbFilmStorage.rebuildIndexes();
+    }
+
+    @Test
+    public void testFilmsPageFollowsCursor() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            ids.add(dbFilmStorage.createFilm(createFilm("Film " + i)));
+        }
+
+        JsonNode first = getJson("/films?limit=2");
+        assertThat(filmIds(first)).containsExactly(ids.get(0), ids.get(1));
+        assertThat(first.get("nextCursor").asLong()).isEqualTo(ids.get(1));
+
+        JsonNode second = getJson("/films?limit=2&after=" + ids.get(1));
+        assertThat(filmIds(second)).containsExactly(ids.get(2), ids.get(3));
+        assertThat(second.get("nextCursor").asLong()).isEqualTo(ids.get(3));
+    }
+
+    @Test
+    public void testLastFilmsPageHasNoCursor() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            ids.add(dbFilmStorage.createFilm(createFilm("Film " + i)));
+        }
+
+        JsonNode last = getJson("/films?limit=2&after=" + ids.get(1));
+
+        assertThat(filmIds(last)).containsExactly(ids.get(2));
+        assertThat(last.get("nextCursor").isNull()).isTrue();
+    }
+
+    @Test
+    public void testInvalidFilmsPageLimitRejected() throws Exception {
+        mockMvc.perform(get("/films?limit=0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/films?limit=1001")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testPageAndIdsParametersAreMutuallyExclusive() throws Exception {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Film"));
+
+        mockMvc.perform(get("/films?limit=10&ids=" + filmId)).andExpect(status().isBadRequest());
+        assertThat(getJson("/films?ids=" + filmId).toString()).contains("\"Film\"");
+    }
+
+    @Test
+    public void testExportWritesOneFilmPerLine() throws Exception {
+        Long filmId1 = dbFilmStorage.createFilm(createFilm("Film 1", 1L, 2L));
+        Long filmId2 = dbFilmStorage.createFilm(createFilm("Film 2"));
+
+        MvcResult result = exportResult("/films/export");
+        // Тело декодируется в кодировке, объявленной в Content-Type
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+
+        assertThat(MediaType.parseMediaType(result.getResponse().getContentType()))
+                .isEqualTo(NdjsonWriter.APPLICATION_NDJSON);
+        assertThat(lines).hasSize(2);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertThat(first.get("id").asLong()).isEqualTo(filmId1);
+        assertThat(first.get("genres").findValuesAsText("name")).containsExactly("Комедия", "Драма");
+        assertThat(second.get("id").asLong()).isEqualTo(filmId2);
+        assertThat(second.get("genres")).isEmpty();
+    }
+
+    @Test
+    public void testExportOfEmptyTableIsEmpty() throws Exception {
+        MvcResult result = exportResult("/films/export");
+
+        assertThat(result.getResponse().getContentType()).startsWith(NdjsonWriter.APPLICATION_NDJSON_VALUE);
+        assertThat(result.getResponse().getContentAsString()).isEmpty();
+    }
+
+    @Test
+    public void testExportHasOwnAsyncTimeout() throws Exception {
+        MvcResult result = mockMvc.perform(get("/films/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Без ограничения только выгрузка: стандартный таймаут асинхронных запросов не меняется
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(-1);
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void testBatchImportOfJsonArray() throws Exception {
+        String films = """
+                [{"name": "Film 1", "description": "Description", "releaseDate": "2000-01-01", "duration": 100,
+                  "mpa": {"id": 1}, "genres": [{"id": 1}, {"id": 2}]},
+                 {"name": "Film 2", "description": "Description", "releaseDate": "2001-01-01", "duration": 90}]
+                """;
+
+        JsonNode result = postBatch(MediaType.APPLICATION_JSON, films);
+
+        assertThat(result.get("imported").asInt()).isEqualTo(2);
+        assertThat(result.get("failed").asInt()).isZero();
+        assertThat(result.get("errors")).isEmpty();
+        Film first = dbFilmStorage.getFilmsPage(null, 10).get(0);
+        assertThat(first.getName()).isEqualTo("Film 1");
+        assertThat(first.getGenres()).extracting(Genre::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void testBatchImportReportsInvalidNdjsonItems() throws Exception {
+        String films = """
+                {"name": "Film 1", "description": "Description", "releaseDate": "2000-01-01", "duration": 100}
+                {"name": "", "description": "Description", "releaseDate": "2000-01-01", "duration": 100}
+                {"name": "Film 3", "description": "Description", "releaseDate": "2000-01-01", "duration": 100}
+                """;
+
+        JsonNode result = postBatch(NdjsonWriter.APPLICATION_NDJSON, films);
+
+        assertThat(result.get("imported").asInt()).isEqualTo(2);
+        assertThat(result.get("failed").asInt()).isEqualTo(1);
+        assertThat(result.get("errors").get(0).get("index").asInt()).isEqualTo(1);
+        assertThat(filmNames()).containsExactly("Film 1", "Film 3");
+    }
+
+    @Test
+    public void testFailedBatchRetriedPerFilm() throws Exception {
+        // Слишком длинное название проходит проверку, но не помещается в столбец: порция откатывается целиком
+        String films = """
+                [{"name": "Film 1", "description": "Description", "releaseDate": "2000-01-01", "duration": 100},
+                 {"name": "%s", "description": "Description", "releaseDate": "2000-01-01", "duration": 100},
+                 {"name": "Film 3", "description": "Description", "releaseDate": "2000-01-01", "duration": 100}]
+                """.formatted("x".repeat(300));
+
+        JsonNode result = postBatch(MediaType.APPLICATION_JSON, films);
+
+        assertThat(result.get("imported").asInt()).isEqualTo(2);
+        assertThat(result.get("failed").asInt()).isEqualTo(1);
+        assertThat(result.get("errors")).hasSize(1);
+        assertThat(result.get("errors").get(0).get("index").asInt()).isEqualTo(1);
+        // Фильмы из откатившейся порции сохранены повторно по одному, без дубликатов
+        assertThat(filmNames()).containsExactly("Film 1", "Film 3");
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM films ORDER BY id", Long.class);
+        assertThat(dbFilmStorage.getFilmsByIds(ids)).extracting(Film::getName).containsExactly("Film 1", "Film 3");
+    }
+
+    private JsonNode postBatch(MediaType contentType, String body) throws Exception {
+        String response = mockMvc.perform(post("/films/batch").contentType(contentType).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private List<String> filmNames() {
+        return jdbcTemplate.queryForList("SELECT name FROM films ORDER BY id", String.class);
+    }
+
+    private MvcResult exportResult(String url) throws Exception {
+        MvcResult result = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        String body = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static List<Long> filmIds(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("items").forEach(film -> ids.add(film.get("id").asLong()));
+        return ids;
+    }
+
+    private Film createFilm(String name, Long... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(100L);
+        film.setGenres(Arrays.stream(genreIds).map(id -> new Genre(id, null)).toList());
+        return film;
+    }
+}
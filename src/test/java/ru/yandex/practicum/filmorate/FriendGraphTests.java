@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FriendGraphTests {
+
+    @Test
+    public void testFriendsAndCommonFriendsFromLoadedGraph() {
+        FriendGraph graph = new FriendGraph(100);
+        FriendGraph.Builder builder = new FriendGraph.Builder();
+        builder.add(1, 2);
+        builder.add(1, 3);
+        builder.add(1, 5);
+        builder.add(2, 3);
+        builder.add(2, 5);
+        graph.load(builder);
+
+        assertThat(graph.friendIds(1)).containsExactly(2, 3, 5);
+        assertThat(graph.friendIds(4)).isEmpty();
+        assertThat(graph.degree(2)).isEqualTo(2);
+        assertThat(graph.commonFriendIds(1, 2)).containsExactly(3, 5);
+    }
+
+    @Test
+    public void testChangesVisibleBeforeAndAfterCompaction() {
+        FriendGraph graph = new FriendGraph(1);
+        FriendGraph.Builder builder = new FriendGraph.Builder();
+        builder.add(1, 3);
+        graph.load(builder);
+
+        graph.addFriend(1, 2);
+        assertThat(graph.friendIds(1)).containsExactly(2, 3);
+
+        // Второй изменённый пользователь превышает порог и запускает слияние слоёв
+        graph.addFriend(4, 3);
+        graph.removeFriend(1, 3);
+        assertThat(graph.friendIds(1)).containsExactly(2);
+        assertThat(graph.friendIds(4)).containsExactly(3);
+
+        graph.removeUser(3, new long[]{4});
+        assertThat(graph.friendIds(4)).isEmpty();
+    }
+}
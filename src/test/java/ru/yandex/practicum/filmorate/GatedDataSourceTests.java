@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.datasource.GatedDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GatedDataSourceTests {
+
+    private GatedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:gate;DB_CLOSE_DELAY=-1");
+        dataSource = new GatedDataSource(h2, 2, 100);
+    }
+
+    @Test
+    public void testConnectionsBeyondPermitsWaitAndTimeOut() throws SQLException {
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        assertThat(dataSource.getActiveConnections()).isEqualTo(2);
+
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+        // Повторное закрытие не возвращает разрешение дважды
+        first.close();
+        first.close();
+        assertThat(dataSource.getActiveConnections()).isEqualTo(1);
+        try (Connection third = dataSource.getConnection()) {
+            assertThat(third.isValid(1)).isTrue();
+            assertThat(dataSource.getActiveConnections()).isEqualTo(2);
+        }
+        second.close();
+        assertThat(dataSource.getActiveConnections()).isZero();
+    }
+
+    @Test
+    public void testWaitingThreadGetsReleasedConnection() throws Exception {
+        GatedDataSource single = new GatedDataSource(dataSource.getTargetDataSource(), 1, 5_000);
+        Connection held = single.getConnection();
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = single.getConnection()) {
+                return connection.isValid(1);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (single.getWaitingThreads() == 0 && !waiting.isDone()) {
+            Thread.onSpinWait();
+        }
+        held.close();
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(single.getActiveConnections()).isZero();
+    }
+}
@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
+import ru.yandex.practicum.filmorate.dao.genre.GenreDao;
+import ru.yandex.practicum.filmorate.dao.rating.RatingDao;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournalFactory;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Запись, перезапуск и восстановление хранилищ в памяти через их журналы
+public class InMemoryStorageJournalTests {
+
+    @TempDir
+    Path directory;
+
+    private final ReferenceDictionary referenceDictionary = referenceDictionary();
+    private StorageJournalFactory journalFactory;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        journalFactory.close();
+    }
+
+    @Test
+    public void testUsersAndFriendshipsRestoredFromJournal() throws IOException {
+        InMemoryUserStorage storage = openUserStorage();
+        long[] ids = createUsers(storage);
+        storage.addFriend(ids[0], ids[1]);
+        storage.addFriend(ids[0], ids[2]);
+        storage.addFriend(ids[1], ids[2]);
+        storage.addFriend(ids[2], ids[3]);
+        storage.removeFriend(ids[0], ids[2]);
+        User updated = user("updated");
+        updated.setId(ids[1]);
+        storage.updateUser(updated);
+        storage.deleteUser(ids[3]);
+
+        assertUsersRestored(storage, ids);
+    }
+
+    @Test
+    public void testUsersRestoredFromSnapshotAndJournalTail() throws IOException {
+        InMemoryUserStorage storage = openUserStorage();
+        long[] ids = createUsers(storage);
+        storage.addFriend(ids[0], ids[1]);
+        storage.addFriend(ids[0], ids[2]);
+        storage.addFriend(ids[2], ids[3]);
+        journalFactory.snapshot();
+        storage.addFriend(ids[1], ids[2]);
+        storage.removeFriend(ids[0], ids[2]);
+        User updated = user("updated");
+        updated.setId(ids[1]);
+        storage.updateUser(updated);
+        storage.deleteUser(ids[3]);
+
+        assertUsersRestored(storage, ids);
+    }
+
+    @Test
+    public void testFilmsAndLikesRestoredFromJournal() throws IOException {
+        InMemoryFilmStorage storage = openFilmStorage();
+        long[] ids = createFilms(storage);
+        storage.addLike(ids[0], 1L);
+        storage.addLike(ids[0], 2L);
+        storage.addLike(ids[1], 1L);
+        storage.addLike(ids[2], 3L);
+        storage.removeLike(ids[0], 2L);
+        Film updated = film("Updated", 1L, 2L);
+        updated.setId(ids[1]);
+        storage.updateFilm(updated);
+        storage.removeFilm(ids[2]);
+
+        assertFilmsRestored(storage, ids);
+    }
+
+    @Test
+    public void testFilmsRestoredFromSnapshotAndJournalTail() throws IOException {
+        InMemoryFilmStorage storage = openFilmStorage();
+        long[] ids = createFilms(storage);
+        storage.addLike(ids[0], 1L);
+        storage.addLike(ids[0], 2L);
+        storage.addLike(ids[2], 3L);
+        journalFactory.snapshot();
+        storage.addLike(ids[1], 1L);
+        storage.removeLike(ids[0], 2L);
+        Film updated = film("Updated", 1L, 2L);
+        updated.setId(ids[1]);
+        storage.updateFilm(updated);
+        storage.removeFilm(ids[2]);
+
+        assertFilmsRestored(storage, ids);
+    }
+
+    private void assertUsersRestored(InMemoryUserStorage storage, long[] ids) throws IOException {
+        List<User> users = storage.getAllUsers();
+        journalFactory.close();
+
+        InMemoryUserStorage restored = openUserStorage();
+
+        assertThat(restored.getAllUsers()).isEqualTo(users);
+        assertThat(restored.getUserById(ids[1]).getLogin()).isEqualTo("updated");
+        assertThat(restored.getFriendIds(ids[0])).containsExactly(ids[1]);
+        assertThat(restored.getFriendIds(ids[1])).containsExactly(ids[2]);
+        assertThat(restored.getFriendIds(ids[2])).isEmpty();
+        assertThat(restored.getFollowerIds(ids[2])).containsExactly(ids[1]);
+        // Счётчик ID восстановлен: новый пользователь не получает ID удалённого
+        assertThat(restored.createUser(user("next"))).isEqualTo(ids[3] + 1);
+    }
+
+    private void assertFilmsRestored(InMemoryFilmStorage storage, long[] ids) throws IOException {
+        List<Film> films = storage.getAllFilms();
+        journalFactory.close();
+
+        InMemoryFilmStorage restored = openFilmStorage();
+
+        assertThat(restored.getAllFilms()).isEqualTo(films);
+        assertThat(restored.getFilmById(ids[1]).getName()).isEqualTo("Updated");
+        // Жанры и рейтинг - общие экземпляры из справочника, а не прочитанные из журнала копии
+        Film film = restored.getFilmById(ids[0]);
+        assertThat(film.getMpa()).isSameAs(referenceDictionary.getRating(1L));
+        assertThat(film.getGenres().get(0)).isSameAs(referenceDictionary.getGenre(1L));
+        List<List<Long>> likes = new ArrayList<>();
+        restored.forEachLike((filmId, userId) -> likes.add(List.of(filmId, userId)));
+        assertThat(likes).containsExactlyInAnyOrder(List.of(ids[0], 1L), List.of(ids[1], 1L));
+        assertThat(restored.getMostPopularFilms(10)).extracting(Film::getId).containsExactlyInAnyOrder(ids[0], ids[1]);
+        assertThat(restored.createFilm(film("Next"))).isEqualTo(ids[2] + 1);
+    }
+
+    private InMemoryUserStorage openUserStorage() {
+        InMemoryUserStorage storage = new InMemoryUserStorage(journalFactoryProvider().getBeanProvider(
+                StorageJournalFactory.class));
+        storage.openJournal();
+        return storage;
+    }
+
+    private InMemoryFilmStorage openFilmStorage() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(new SimpleMeterRegistry(),
+                journalFactoryProvider().getBeanProvider(StorageJournalFactory.class), referenceDictionary,
+                new LikeStore(), 60, 24, 0, 50, 30);
+        storage.openJournal();
+        return storage;
+    }
+
+    // Новая фабрика журналов над тем же каталогом - как после перезапуска приложения
+    private DefaultListableBeanFactory journalFactoryProvider() {
+        journalFactory = new StorageJournalFactory(directory.toString(), 1);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("storageJournalFactory", journalFactory);
+        return beanFactory;
+    }
+
+    private static long[] createUsers(InMemoryUserStorage storage) {
+        long[] ids = new long[4];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = storage.createUser(user("user" + i));
+        }
+        return ids;
+    }
+
+    private static long[] createFilms(InMemoryFilmStorage storage) {
+        long[] ids = new long[3];
+        for (int i = 0; i < ids.length; i++) {
+            Film film = film("Film " + i, 1L);
+            film.setMpa(new Rating(1L, "G"));
+            ids[i] = storage.createFilm(film);
+        }
+        return ids;
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private static Film film(String name, Long... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100L);
+        List<Genre> genres = new ArrayList<>();
+        for (Long genreId : genreIds) {
+            genres.add(new Genre(genreId, genreId == 1L ? "Комедия" : "Драма"));
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    private static ReferenceDictionary referenceDictionary() {
+        GenreDao genreDao = new GenreDao(null) {
+            @Override
+            public List<Genre> getAllGenres() {
+                return List.of(new Genre(1L, "Комедия"), new Genre(2L, "Драма"));
+            }
+        };
+        RatingDao ratingDao = new RatingDao(null) {
+            @Override
+            public List<Rating> getAllRatings() {
+                return List.of(new Rating(1L, "G"));
+            }
+        };
+        ReferenceDictionary dictionary = new ReferenceDictionary(genreDao, ratingDao, event -> {
+        });
+        dictionary.load();
+        return dictionary;
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryUserStorageTests {
+
+    private final InMemoryUserStorage storage = new InMemoryUserStorage();
+
+    @Test
+    public void testFriendshipIsDirected() {
+        Long userId = storage.createUser(user("first"));
+        Long friendId = storage.createUser(user("second"));
+
+        storage.addFriend(userId, friendId);
+
+        assertThat(storage.getFriendIds(userId)).containsExactly(friendId);
+        assertThat(storage.getFriendIds(friendId)).isEmpty();
+    }
+
+    @Test
+    public void testDeleteUserRemovesIncomingAndOutgoingLinks() {
+        Long userId = storage.createUser(user("first"));
+        Long friendId = storage.createUser(user("second"));
+        Long followerId = storage.createUser(user("third"));
+        storage.addFriend(userId, friendId);
+        storage.addFriend(followerId, userId);
+        storage.addFriend(followerId, friendId);
+
+        storage.deleteUser(userId);
+
+        assertThat(storage.getFriendIds(followerId)).containsExactly(friendId);
+        assertThat(storage.getFriendIds(userId)).isEmpty();
+        assertThatThrownBy(() -> storage.addFriend(followerId, userId))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testConcurrentCreateAndAddFriend() throws Exception {
+        Long userId = storage.createUser(user("owner"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String login = "user" + i;
+                futures.add(executor.submit(() -> {
+                    Long friendId = storage.createUser(user(login));
+                    storage.addFriend(userId, friendId);
+                    return friendId;
+                }));
+            }
+            for (Future<Long> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Каждый поток получил свой ID, и ни одна связь не потерялась
+        assertThat(storage.getAllUsers()).hasSize(1001);
+        assertThat(storage.getFriendIds(userId)).hasSize(1000).doesNotHaveDuplicates();
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
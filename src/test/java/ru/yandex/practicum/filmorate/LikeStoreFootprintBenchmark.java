@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Сравнение занимаемой памяти: Map<Long, Set<Long>> (прежнее хранение лайков) и LikeStore.
+// Запуск вручную: java -Xmx4g -cp <test-classes:classes> ru.yandex.practicum.filmorate.LikeStoreFootprintBenchmark
+// [фильмов] [пользователей] [лайков]; по умолчанию 10 000 фильмов, 100 000 пользователей и 10 млн лайков
+public class LikeStoreFootprintBenchmark {
+
+    public static void main(String[] args) {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int likes = args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000;
+
+        long base = usedMemory();
+        Map<Long, Set<Long>> map = new HashMap<>();
+        fill(films, users, likes, (film, user) -> map.computeIfAbsent(film, id -> new HashSet<>()).add(user));
+        long mapBytes = usedMemory() - base;
+        System.out.printf("Map<Long, Set<Long>>: %,d байт, %.1f байт на лайк%n", mapBytes, (double) mapBytes / likes);
+        map.clear();
+
+        base = usedMemory();
+        LikeStore store = new LikeStore();
+        // Хранилище держит и обратный индекс пользователь -> фильмы, прежняя карта - нет
+        fill(films, users, likes, store::add);
+        long storeBytes = usedMemory() - base;
+        System.out.printf("LikeStore (с обратным индексом): %,d байт, %.1f байт на лайк, оценка множеств %,d байт%n",
+                storeBytes, (double) storeBytes / likes, store.sizeInBytes());
+    }
+
+    private static void fill(int films, int users, int likes, LikeSink sink) {
+        // Популярность фильмов распределена неравномерно: часть фильмов собирает большинство лайков
+        Random random = new Random(1);
+        for (int i = 0; i < likes; i++) {
+            long film = 1 + (long) (films * Math.pow(random.nextDouble(), 3));
+            long user = 1 + random.nextInt(users);
+            sink.add(film, user);
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private interface LikeSink {
+        void add(long filmId, long userId);
+    }
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.film.AppliedLikes;
+import ru.yandex.practicum.filmorate.dao.film.FilmDao;
+import ru.yandex.practicum.filmorate.dao.film.LikeOperation;
+import ru.yandex.practicum.filmorate.dao.film.LikeWriteBuffer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LikeWriteBufferTests {
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    public void testOperationsWrittenInBatches() throws Exception {
+        RecordingFilmDao filmDao = new RecordingFilmDao();
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmDao, 100, 3, 50);
+        for (long userId = 1; userId <= 7; userId++) {
+            buffer.addLike(1, userId, NOW);
+        }
+
+        buffer.start();
+        buffer.stop();
+
+        assertThat(filmDao.batches.stream().map(List::size)).containsExactly(3, 3, 1);
+    }
+
+    @Test
+    public void testLastOperationPerFilmAndUserWins() throws Exception {
+        RecordingFilmDao filmDao = new RecordingFilmDao();
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmDao, 100, 10, 50);
+        buffer.addLike(1, 1, NOW);
+        buffer.removeLike(1, 1, NOW.plusSeconds(1));
+        buffer.addLike(1, 2, NOW.plusSeconds(2));
+
+        buffer.start();
+        buffer.stop();
+
+        assertThat(filmDao.batches).containsExactly(List.of(
+                new LikeOperation(1, 1, false, NOW.plusSeconds(1)),
+                new LikeOperation(1, 2, true, NOW.plusSeconds(2))));
+    }
+
+    @Test
+    public void testFullQueueBlocksCallerUntilFlushed() throws Exception {
+        RecordingFilmDao filmDao = new RecordingFilmDao();
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmDao, 2, 10, 10);
+        buffer.addLike(1, 1, NOW);
+        buffer.addLike(1, 2, NOW);
+
+        Thread caller = new Thread(() -> buffer.addLike(1, 3, NOW));
+        caller.start();
+        await(() -> caller.getState() == Thread.State.WAITING);
+        assertThat(caller.isAlive()).isTrue();
+
+        buffer.start();
+        caller.join(5000);
+        assertThat(caller.isAlive()).isFalse();
+        buffer.stop();
+
+        assertThat(filmDao.applied()).hasSize(3);
+    }
+
+    @Test
+    public void testStopWritesQueuedOperationsAndRejectsNewOnes() throws Exception {
+        RecordingFilmDao filmDao = new RecordingFilmDao();
+        // Интервал больше времени теста: операции записываются только при остановке
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmDao, 100, 1000, 3_600_000);
+        buffer.start();
+        for (long userId = 1; userId <= 5; userId++) {
+            buffer.addLike(1, userId, NOW);
+        }
+
+        long started = System.nanoTime();
+        buffer.stop();
+
+        assertThat(System.nanoTime() - started).isLessThan(5_000_000_000L);
+        assertThat(filmDao.applied()).hasSize(5);
+        assertThatThrownBy(() -> buffer.addLike(1, 6, NOW)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testOperationsAcceptedBeforeStopAreNotLost() throws Exception {
+        RecordingFilmDao filmDao = new RecordingFilmDao();
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmDao, 16, 8, 1);
+        buffer.start();
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            long filmId = i + 1;
+            Thread caller = new Thread(() -> {
+                for (long userId = 1; ; userId++) {
+                    try {
+                        buffer.addLike(filmId, userId, NOW);
+                    } catch (IllegalStateException e) {
+                        return;
+                    }
+                    accepted.incrementAndGet();
+                }
+            });
+            callers.add(caller);
+            caller.start();
+        }
+
+        await(() -> accepted.get() > 1000);
+        buffer.stop();
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+
+        assertThat(filmDao.applied()).hasSize(accepted.get());
+    }
+
+    @Test
+    public void testFailedBatchRetriedPerOperation() throws Exception {
+        RecordingFilmDao filmDao = new RecordingFilmDao();
+        filmDao.missingFilmId = 999;
+        LikeWriteBuffer buffer = new LikeWriteBuffer(filmDao, 100, 10, 50);
+        List<AppliedLikes> flushed = new CopyOnWriteArrayList<>();
+        buffer.setFlushListener(flushed::add);
+        buffer.addLike(1, 1, NOW);
+        buffer.addLike(999, 1, NOW);
+        buffer.addLike(2, 1, NOW);
+
+        buffer.start();
+        buffer.stop();
+
+        assertThat(filmDao.attempts.stream().map(List::size)).containsExactly(3, 1, 1, 1);
+        assertThat(filmDao.applied()).containsExactly(new LikeOperation(1, 1, true, NOW),
+                new LikeOperation(2, 1, true, NOW));
+        assertThat(flushed.stream().map(AppliedLikes::likeCounts)).containsExactly(Map.of(1L, 1L), Map.of(2L, 1L));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("ожидание условия").isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // Запоминает пакеты вместо записи в базу; пакет с фильмом missingFilmId откатывается целиком
+    private static class RecordingFilmDao extends FilmDao {
+        private final List<List<LikeOperation>> attempts = new CopyOnWriteArrayList<>();
+        private final List<List<LikeOperation>> batches = new CopyOnWriteArrayList<>();
+        private volatile long missingFilmId = -1;
+
+        private RecordingFilmDao() {
+            super(null, null);
+        }
+
+        @Override
+        public AppliedLikes applyLikeOperations(List<LikeOperation> operations) {
+            attempts.add(List.copyOf(operations));
+            if (operations.stream().anyMatch(operation -> operation.filmId() == missingFilmId)) {
+                throw new IllegalStateException("Фильм с ID " + missingFilmId + " не существует.");
+            }
+            batches.add(List.copyOf(operations));
+            Map<Long, Long> likeCounts = new HashMap<>();
+            operations.forEach(operation -> likeCounts.merge(operation.filmId(), 1L, Long::sum));
+            return new AppliedLikes(likeCounts, operations.stream().filter(LikeOperation::like).toList(),
+                    operations.stream().filter(operation -> !operation.like()).toList());
+        }
+
+        private List<LikeOperation> applied() {
+            return batches.stream().flatMap(List::stream).toList();
+        }
+    }
+}
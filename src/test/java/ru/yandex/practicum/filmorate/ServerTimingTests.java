@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.yandex.practicum.filmorate.controller.ServerTimingFilter;
+import ru.yandex.practicum.filmorate.dao.datasource.StatementStats;
+import ru.yandex.practicum.filmorate.dao.dictionary.ReferenceDictionary;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.dao.user.DbUserStorage;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Число операторов SQL на запрос к эндпоинтам не должно расти с размером ответа (N+1)
+@SpringBootTest(properties = "filmorate.db.statement-stats.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ServerTimingTests {
+    private static final Pattern STATEMENTS = Pattern.compile("db;dur=[0-9.]+;desc=\"(\\d+) statements\"");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DbUserStorage dbUserStorage;
+
+    @Autowired
+    private DbFilmStorage dbFilmStorage;
+
+    @Autowired
+    private ReferenceDictionary referenceDictionary;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.execute("TRUNCATE TABLE likes");
+        jdbcTemplate.execute("TRUNCATE TABLE film_genres");
+        jdbcTemplate.execute("TRUNCATE TABLE films");
+        jdbcTemplate.execute("TRUNCATE TABLE friendships");
+        jdbcTemplate.execute("TRUNCATE TABLE users");
+        jdbcTemplate.execute("TRUNCATE TABLE genres");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        jdbcTemplate.update("INSERT INTO genres (id, name) VALUES (1, 'Комедия'), (2, 'Драма'), (3, 'Мультфильм')");
+
+        // Таблицы очищены в обход хранилища - перечитываем справочники и перестраиваем индексы
+        referenceDictionary.reload();
+        dbFilmStorage.rebuildIndexes();
+    }
+
+    @Test
+    public void testCommonFriendsUseSingleQuery() throws Exception {
+        long userId = createUser();
+        long otherId = createUser();
+        for (int i = 0; i < 10; i++) {
+            long friendId = createUser();
+            jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED')",
+                    userId, friendId);
+            jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED')",
+                    otherId, friendId);
+        }
+
+        assertStatementBudget(mockMvc, get("/users/{id}/friends/common/{otherId}", userId, otherId), 1);
+    }
+
+    @Test
+    public void testCreateFilmWithGenresUsesBatch() throws Exception {
+        String film = """
+                {"name": "Film", "description": "Description", "releaseDate": "2000-01-01", "duration": 100,
+                 "genres": [{"id": 1}, {"id": 2}, {"id": 3}]}
+                """;
+
+        // Вставка фильма и один пакет связей с жанрами
+        assertStatementBudget(mockMvc, post("/films").contentType(MediaType.APPLICATION_JSON).content(film), 2);
+    }
+
+    @Test
+    public void testPopularFilmsLoadedWithoutPerFilmQueries() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content("""
+                    {"name": "Film", "description": "Description", "releaseDate": "2000-01-01", "duration": 100,
+                     "genres": [{"id": 1}, {"id": 2}]}
+                    """)).andExpect(status().isOk());
+        }
+
+        // Фильмы и их жанры - по одному запросу, сколько бы фильмов ни было в ответе
+        assertStatementBudget(mockMvc, get("/films/popular?count=10"), 2);
+    }
+
+    @Test
+    public void testAsyncExportHasNoTimingHeader() throws Exception {
+        mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content("""
+                {"name": "Film", "description": "Description", "releaseDate": "2000-01-01", "duration": 100}
+                """)).andExpect(status().isOk());
+
+        // Тело выгрузки пишется после выхода из фильтра: неполный счётчик операторов не отдаётся
+        MvcResult started = mockMvc.perform(get("/films/export"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().doesNotExist(ServerTimingFilter.HEADER))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ServerTimingFilter.HEADER));
+    }
+
+    @Test
+    public void testRepeatedStatementsAreDetected() {
+        StatementStats stats = StatementStats.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+            }
+        } finally {
+            StatementStats.stop();
+        }
+
+        assertThat(stats.getStatements()).isEqualTo(3);
+        assertThat(stats.repeated(3)).isEqualTo(Map.of("SELECT COUNT(*) FROM users", 3));
+    }
+
+    // Запрос выполняется успешно и укладывается в maxStatements операторов SQL по заголовку Server-Timing.
+    // Контекст теста должен включать учёт (filmorate.db.statement-stats.enabled=true)
+    static void assertStatementBudget(MockMvc mockMvc, RequestBuilder request, int maxStatements) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(status().is2xxSuccessful())
+                .andReturn();
+        String endpoint = result.getRequest().getMethod() + " " + result.getRequest().getRequestURI();
+        String timing = result.getResponse().getHeader(ServerTimingFilter.HEADER);
+        assertThat(timing).as("Server-Timing в ответе на %s", endpoint).isNotNull();
+        Matcher matcher = STATEMENTS.matcher(timing);
+        assertThat(matcher.find()).as("число операторов в Server-Timing: %s", timing).isTrue();
+        assertThat(Integer.parseInt(matcher.group(1))).as("операторов SQL в %s", endpoint)
+                .isLessThanOrEqualTo(maxStatements);
+    }
+
+    private long createUser() {
+        String login = "u" + UUID.randomUUID().toString().replace("-", "");
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return dbUserStorage.createUser(user);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.LikeStore;
+import ru.yandex.practicum.filmorate.storage.film.SimilarityIndex;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimilarityIndexTests {
+
+    @Test
+    public void testCandidatesShareAnyGenreAndRankByOverlap() {
+        SimilarityIndex index = new SimilarityIndex(new LikeStore(), 1.0, 100);
+        index.setGenres(1, List.of(1L, 2L, 3L));
+        index.setGenres(2, List.of(1L));
+        index.setGenres(3, List.of(1L, 2L));
+        index.setGenres(4, List.of(3L, 4L));
+        index.setGenres(5, List.of(4L));
+
+        // Фильмы без полного совпадения жанров тоже кандидаты; порядок - по доле общих жанров
+        assertThat(index.similar(1, 10)).containsExactly(3L, 2L, 4L);
+    }
+
+    @Test
+    public void testCandidatesRankedBeforeCap() {
+        SimilarityIndex index = new SimilarityIndex(new LikeStore(), 1.0, 2);
+        index.setGenres(1, List.of(1L, 2L));
+        // Фильмы 2-9 совпадают с фильмом 1 по одному жанру из двух, фильм 10 - по обоим
+        for (long filmId = 2; filmId <= 9; filmId++) {
+            index.setGenres(filmId, List.of(1L));
+        }
+        index.setGenres(10, List.of(1L, 2L));
+
+        assertThat(index.similar(1, 1)).containsExactly(10L);
+    }
+
+    @Test
+    public void testRemovedFilmAndLikesLeaveIndex() {
+        LikeStore likes = new LikeStore();
+        SimilarityIndex index = new SimilarityIndex(likes, 0.3, 100);
+        likes.addListener(index);
+        index.setGenres(1, List.of(1L));
+        index.setGenres(2, List.of(1L));
+        index.setGenres(3, List.of(2L));
+        likes.add(1, 1);
+        likes.add(3, 1);
+        // Фильм 3 совпадает по аудитории (вес 0.7), фильм 2 - по жанру (вес 0.3)
+        assertThat(index.similar(1, 10)).containsExactly(3L, 2L);
+
+        likes.remove(3, 1);
+        likes.removeFilm(2);
+        assertThat(index.similar(1, 10)).isEmpty();
+    }
+}
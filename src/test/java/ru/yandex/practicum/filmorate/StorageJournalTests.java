@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StorageJournalTests {
+
+    private static final int SEGMENT_SIZE = 1 << 12;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testStateRestoredFromSnapshotAndLogTail() throws IOException {
+        MapTarget target = new MapTarget();
+        StorageJournal journal = StorageJournal.open(directory, SEGMENT_SIZE, target);
+        // Несколько сегментов до снимка и после него
+        for (long key = 0; key < 500; key++) {
+            put(journal, target, key, key * 2);
+        }
+        journal.snapshot();
+        for (long key = 250; key < 750; key++) {
+            put(journal, target, key, -key);
+        }
+        journal.close();
+
+        MapTarget restored = new MapTarget();
+        StorageJournal.open(directory, SEGMENT_SIZE, restored).close();
+
+        assertThat(restored.values).hasSize(750).isEqualTo(target.values);
+        assertThat(restored.values.get(100L)).isEqualTo(200L);
+        assertThat(restored.values.get(600L)).isEqualTo(-600L);
+    }
+
+    @Test
+    public void testTornRecordAtSegmentTailIsSkipped() throws IOException {
+        MapTarget target = new MapTarget();
+        StorageJournal journal = StorageJournal.open(directory, SEGMENT_SIZE, target);
+        put(journal, target, 1, 10);
+        put(journal, target, 2, 20);
+        journal.close();
+
+        // Портим последний байт данных второй записи: заголовок 8 байт + 16 байт данных на запись
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(2 * 24 - 1);
+            file.write(0x7F);
+        }
+
+        MapTarget restored = new MapTarget();
+        StorageJournal reopened = StorageJournal.open(directory, SEGMENT_SIZE, restored);
+        assertThat(restored.values).containsExactly(Map.entry(1L, 10L));
+
+        // Запись продолжается в новом сегменте и переживает следующий перезапуск
+        put(reopened, restored, 3, 30);
+        reopened.close();
+        MapTarget again = new MapTarget();
+        StorageJournal.open(directory, SEGMENT_SIZE, again).close();
+        assertThat(again.values).containsOnlyKeys(1L, 3L);
+    }
+
+    private static void put(StorageJournal journal, MapTarget target, long key, long value) {
+        journal.awaitDurable(journal.append(out -> {
+            out.writeLong(key);
+            out.writeLong(value);
+        }, () -> target.values.put(key, value)));
+    }
+
+    private static class MapTarget implements StorageJournal.Target {
+        private final Map<Long, Long> values = new ConcurrentHashMap<>();
+
+        @Override
+        public void writeSnapshot(DataOutput out) throws IOException {
+            out.writeInt(values.size());
+            for (Map.Entry<Long, Long> entry : values.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+
+        @Override
+        public void readSnapshot(DataInput in) throws IOException {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                values.put(in.readLong(), in.readLong());
+            }
+        }
+
+        @Override
+        public void apply(DataInput record) throws IOException {
+            values.put(record.readLong(), record.readLong());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserServiceTests {
+
+    private final InMemoryUserStorage storage = new InMemoryUserStorage();
+
+    @Test
+    public void testFollowerSuggestionsRefreshedWhenFriendChangesFriends() {
+        UserService userService = new UserService(storage, 60_000, 5000);
+        Long userId = storage.createUser(user("user"));
+        Long friendId = storage.createUser(user("friend"));
+        Long candidateId = storage.createUser(user("candidate"));
+        userService.addFriend(userId, friendId);
+        assertThat(userService.getFriendSuggestions(userId, 10)).isEmpty();
+
+        // Изменились друзья друга: закэшированные рекомендации пользователя сбрасываются сразу, а не по TTL
+        userService.addFriend(friendId, candidateId);
+        assertThat(userService.getFriendSuggestions(userId, 10)).extracting(User::getId).containsExactly(candidateId);
+
+        userService.removeFriend(friendId, candidateId);
+        assertThat(userService.getFriendSuggestions(userId, 10)).isEmpty();
+    }
+
+    @Test
+    public void testExpandedFriendsSampledAtRandom() {
+        // Кэш не хранит результат, поэтому выборка друзей делается при каждом запросе
+        UserService userService = new UserService(storage, 0, 2);
+        Long userId = storage.createUser(user("user"));
+        for (int i = 0; i < 10; i++) {
+            Long friendId = storage.createUser(user("friend" + i));
+            Long candidateId = storage.createUser(user("candidate" + i));
+            userService.addFriend(userId, friendId);
+            userService.addFriend(friendId, candidateId);
+        }
+
+        Set<Long> suggested = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            List<User> suggestions = userService.getFriendSuggestions(userId, 10);
+            assertThat(suggestions).hasSize(2);
+            suggestions.forEach(suggestion -> suggested.add(suggestion.getId()));
+        }
+
+        // Первые по ID друзья дали бы всегда одних и тех же двух кандидатов
+        assertThat(suggested.size()).isGreaterThan(2);
+    }
+
+    private static User user(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+}
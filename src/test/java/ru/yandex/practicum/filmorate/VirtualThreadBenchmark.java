@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmStorage;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+// Сравнение пропускной способности и задержек /films/popular и /users/{id}/friends при обработке запросов
+// в пуле потоков Tomcat и в виртуальных потоках с ограничением обращений к базе данных.
+// Для каждого режима запускается отдельный экземпляр приложения на своей базе H2 в памяти.
+// Запуск вручную: java -cp <test-classes:classes:зависимости> ru.yandex.practicum.filmorate.VirtualThreadBenchmark
+// [одновременных клиентов] [секунд на замер]
+public class VirtualThreadBenchmark {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 2_000;
+    private static final int FRIENDS_PER_USER = 20;
+    private static final int LIKES = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        for (boolean virtual : new boolean[]{false, true}) {
+            run(virtual, clients, seconds);
+        }
+    }
+
+    private static void run(boolean virtual, int clients, int seconds) throws Exception {
+        String mode = virtual ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "spring.sql.init.mode=always",
+                        "logging.level.root=WARN")
+                .run()) {
+            seed(context.getBean(JdbcTemplate.class));
+            context.getBean(DbFilmStorage.class).rebuildIndexes();
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            String base = "http://localhost:" + port;
+
+            // Прогрев, результат не выводится
+            load(clients, 2, i -> base + "/films/popular?count=10");
+            report(mode, "/films/popular", clients, seconds, i -> base + "/films/popular?count=10");
+            report(mode, "/users/{id}/friends", clients, seconds, i -> base + "/users/" + (1 + i) + "/friends");
+        }
+    }
+
+    private static void report(String mode, String endpoint, int clients, int seconds, IntFunction<String> url)
+            throws Exception {
+        AtomicLong errors = new AtomicLong();
+        long[] latencies = load(clients, seconds, url, errors);
+        System.out.printf("%-8s %-20s клиентов %d: %,.0f запросов/с, p50 %.1f мс, p99 %.1f мс, ошибок %d%n",
+                mode, endpoint, clients, (double) latencies.length / seconds, percentile(latencies, 0.50),
+                percentile(latencies, 0.99), errors.get());
+    }
+
+    private static void load(int clients, int seconds, IntFunction<String> url) throws Exception {
+        load(clients, seconds, url, new AtomicLong());
+    }
+
+    // Каждый клиент в своём виртуальном потоке отправляет запросы друг за другом до истечения времени.
+    // Возвращает отсортированные задержки успешных запросов, нс
+    private static long[] load(int clients, int seconds, IntFunction<String> url, AtomicLong errors)
+            throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < clients; client++) {
+                results.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = HttpRequest.newBuilder(
+                                URI.create(url.apply(ThreadLocalRandom.current().nextInt(USERS)))).build();
+                        long started = System.nanoTime();
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - started;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        return results.stream()
+                .map(VirtualThreadBenchmark::get)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+    }
+
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(1);
+        List<Object[]> users = new ArrayList<>(USERS);
+        for (int i = 1; i <= USERS; i++) {
+            users.add(new Object[]{"user" + i + "@example.com", "user" + i, "User " + i,
+                    Date.valueOf(LocalDate.of(1990, 1, 1))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)", users);
+
+        List<Object[]> films = new ArrayList<>(FILMS);
+        for (int i = 1; i <= FILMS; i++) {
+            films.add(new Object[]{"Film " + i, "Description", Date.valueOf(LocalDate.of(2000, 1, 1)), 100});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)",
+                films);
+
+        List<Object[]> friendships = new ArrayList<>(USERS * FRIENDS_PER_USER);
+        for (int user = 1; user <= USERS; user++) {
+            for (int i = 1; i <= FRIENDS_PER_USER; i++) {
+                friendships.add(new Object[]{user, 1 + (user + i * 97) % USERS, "UNCONFIRMED"});
+            }
+        }
+        jdbcTemplate.batchUpdate("MERGE INTO friendships (user_id, friend_id, status) VALUES (?, ?, ?)",
+                friendships);
+
+        List<Object[]> likes = new ArrayList<>(LIKES);
+        for (int i = 0; i < LIKES; i++) {
+            likes.add(new Object[]{1 + random.nextInt(FILMS), 1 + random.nextInt(USERS)});
+        }
+        jdbcTemplate.batchUpdate("MERGE INTO likes (film_id, user_id) VALUES (?, ?)", likes);
+        jdbcTemplate.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)");
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(quantile * (sorted.length - 1)))] / 1_000_000.0;
+    }
+
+    private static long[] get(Future<long[]> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
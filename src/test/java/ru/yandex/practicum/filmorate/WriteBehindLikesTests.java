@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.dao.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.exception.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exception.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=10",
+        "filmorate.trending.refresh-ms=0"
+})
+@ActiveProfiles("test")
+public class WriteBehindLikesTests {
+
+    @Autowired
+    private DbFilmStorage dbFilmStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.execute("TRUNCATE TABLE likes");
+        jdbcTemplate.execute("TRUNCATE TABLE film_genres");
+        jdbcTemplate.execute("TRUNCATE TABLE films");
+        jdbcTemplate.execute("TRUNCATE TABLE friendships");
+        jdbcTemplate.execute("TRUNCATE TABLE users");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        dbFilmStorage.rebuildIndexes();
+    }
+
+    @Test
+    public void testLikeForMissingFilmOrUserRejectedBeforeQueueing() {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Film"));
+        Long userId = createUser("user");
+
+        assertThatThrownBy(() -> dbFilmStorage.addLike(999L, userId)).isInstanceOf(FilmNotFoundException.class);
+        assertThatThrownBy(() -> dbFilmStorage.addLike(filmId, 999L)).isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> dbFilmStorage.removeLike(999L, userId)).isInstanceOf(FilmNotFoundException.class);
+    }
+
+    @Test
+    public void testLikeTimeIsRequestTime() throws InterruptedException {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Film"));
+        Long userId = createUser("user");
+
+        Instant before = Instant.now();
+        dbFilmStorage.addLike(filmId, userId);
+        Instant after = Instant.now();
+        await(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Long.class) == 1);
+
+        Instant likedAt = jdbcTemplate.queryForObject("SELECT created_at FROM likes WHERE film_id = ?",
+                Timestamp.class, filmId).toInstant();
+        assertThat(likedAt).isBetween(before.minusMillis(1), after.plusMillis(1));
+    }
+
+    @Test
+    public void testTrendingCountsOnlyAppliedLikes() throws InterruptedException {
+        Long filmId1 = dbFilmStorage.createFilm(createFilm("Film 1"));
+        Long filmId2 = dbFilmStorage.createFilm(createFilm("Film 2"));
+        Long filmId3 = dbFilmStorage.createFilm(createFilm("Film 3"));
+        Long userId1 = createUser("user1");
+        Long userId2 = createUser("user2");
+        Long userId3 = createUser("user3");
+
+        // Повторный лайк фильма 1 не должен догнать два разных лайка фильма 2
+        dbFilmStorage.addLike(filmId1, userId1);
+        dbFilmStorage.addLike(filmId2, userId1);
+        dbFilmStorage.addLike(filmId2, userId2);
+        await(() -> trending().equals(List.of(filmId2, filmId1)));
+        dbFilmStorage.addLike(filmId1, userId1);
+        // Снятие несуществующего лайка не должно уменьшить счётчик фильма 2
+        dbFilmStorage.removeLike(filmId2, userId3);
+        // Лайк фильма 3 записывается после предыдущих операций - по нему видно, что они обработаны
+        dbFilmStorage.addLike(filmId3, userId3);
+        await(() -> trending().contains(filmId3));
+
+        assertThat(trending()).containsExactly(filmId2, filmId1, filmId3);
+    }
+
+    @Test
+    public void testLikeCounterMovedByAppliedRowsOnly() throws InterruptedException {
+        Long filmId = dbFilmStorage.createFilm(createFilm("Film"));
+        Long userId1 = createUser("user1");
+        Long userId2 = createUser("user2");
+        Long userId3 = createUser("user3");
+
+        dbFilmStorage.addLike(filmId, userId1);
+        dbFilmStorage.addLike(filmId, userId2);
+        await(() -> likesCount(filmId) == 2);
+        // Повторный лайк и снятие несуществующего лайка счётчик не меняют
+        dbFilmStorage.addLike(filmId, userId1);
+        dbFilmStorage.removeLike(filmId, userId3);
+        dbFilmStorage.removeLike(filmId, userId2);
+        await(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Long.class) == 1);
+
+        assertThat(likesCount(filmId)).isEqualTo(1);
+    }
+
+    private long likesCount(Long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE id = ?", Long.class, filmId);
+    }
+
+    private List<Long> trending() {
+        return dbFilmStorage.getTrendingFilms(Duration.ofDays(1), 10).stream()
+                .map(Film::getId)
+                .toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("ожидание записи лайков").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(100L);
+        return film;
+    }
+
+    private Long createUser(String login) {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                login + "@example.com", login, login, LocalDate.of(1990, 1, 1));
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = ?", Long.class, login);
+    }
+}